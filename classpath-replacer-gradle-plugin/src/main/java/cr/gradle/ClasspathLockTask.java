@@ -0,0 +1,304 @@
+package cr.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.ExternalModuleDependency;
+import org.gradle.api.artifacts.ResolutionStrategy;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.artifacts.result.DependencyResult;
+import org.gradle.api.artifacts.result.ResolvedArtifactResult;
+import org.gradle.api.artifacts.result.ResolvedComponentResult;
+import org.gradle.api.artifacts.result.ResolvedDependencyResult;
+import org.gradle.api.attributes.Bundling;
+import org.gradle.api.attributes.Category;
+import org.gradle.api.attributes.LibraryElements;
+import org.gradle.api.attributes.Usage;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.SetProperty;
+import org.gradle.api.tasks.IgnoreEmptyDirectories;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Resolves the coordinates of all {@code @Classpath} usages in the compiled test classes with Gradle dependency
+ * resolution, and writes them to a lockfile, which is read by {@code cr.resolver.LockfileResolver} at test time.
+ *
+ * <p> Each lockfile section is one dependency graph, keyed by the same coordinates the test JVM resolves together:
+ * coordinates of one {@code add} are split into graphs on repeated groupId:artifactId and reversed within a graph,
+ * coordinates to exclude with {@code excludeTransitive} are resolved one by one.
+ *
+ * <p> Like Maven, declared coordinates win over transitive versions ({@code strictly}), but transitive conflicts are
+ * mediated by Gradle (highest wins), while the test JVM without a lockfile mediates them like Maven (nearest wins). A
+ * warning is logged for each graph whose locked versions differ from nearest wins, see {@link #nearestWinsConflicts}.
+ *
+ * @author Freeman
+ */
+public abstract class ClasspathLockTask extends DefaultTask {
+
+    static final String HEADER = "# classpath-replacer lockfile v1";
+
+    private static final String COORDINATE_WITH_VERSION_PATTERN = "^[^:]+:[^:]+:[^:]+$";
+    private static final String COORDINATE_WITHOUT_VERSION_PATTERN = "^[^:]+:[^:]+$";
+
+    public ClasspathLockTask() {
+        notCompatibleWithConfigurationCache("Resolves dependencies at execution time");
+    }
+
+    /**
+     * Compiled test classes to scan.
+     */
+    @InputFiles
+    @IgnoreEmptyDirectories
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract ConfigurableFileCollection getClassesDirs();
+
+    /**
+     * Modules on the test runtime classpath (groupId:artifactId:version), used to find the versions of coordinates
+     * to exclude without version.
+     */
+    @Input
+    public abstract SetProperty<String> getRuntimeModules();
+
+    @OutputFile
+    public abstract RegularFileProperty getLockfile();
+
+    @TaskAction
+    public void lock() throws IOException {
+        Map<String, List<String>> graphs = new TreeMap<>();
+        Map<String, List<ResolvedArtifactResult>> resolved = new HashMap<>();
+        for (ClasspathScanner.Usage usage :
+                ClasspathScanner.scan(getClassesDirs().getFiles())) {
+            Set<String> modules = new HashSet<>(getRuntimeModules().get());
+            for (List<String> graph : splitIntoGraphs(usage.add)) {
+                List<ResolvedArtifactResult> artifacts = resolve(graph, graphs, resolved);
+                for (ResolvedArtifactResult artifact : artifacts) {
+                    ComponentIdentifier id = artifact.getId().getComponentIdentifier();
+                    if (id instanceof ModuleComponentIdentifier) {
+                        modules.add(module((ModuleComponentIdentifier) id));
+                    }
+                }
+            }
+            if (!usage.excludeTransitive) {
+                continue;
+            }
+            for (String pattern : usage.exclude) {
+                if (pattern.matches(COORDINATE_WITH_VERSION_PATTERN)) {
+                    resolve(Collections.singletonList(pattern), graphs, resolved);
+                } else if (pattern.matches(COORDINATE_WITHOUT_VERSION_PATTERN)) {
+                    for (String module : modules) {
+                        if (module.startsWith(pattern + ":")) {
+                            resolve(Collections.singletonList(module), graphs, resolved);
+                        }
+                    }
+                }
+            }
+        }
+        write(graphs, resolved);
+    }
+
+    private List<ResolvedArtifactResult> resolve(
+            List<String> coordinates,
+            Map<String, List<String>> graphs,
+            Map<String, List<ResolvedArtifactResult>> resolved) {
+        String key = String.join(" ", coordinates);
+        if (resolved.containsKey(key)) {
+            return resolved.get(key);
+        }
+        List<ResolvedArtifactResult> artifacts = new ArrayList<>();
+        if (coordinates.stream().allMatch(coordinate -> coordinate.matches(COORDINATE_WITH_VERSION_PATTERN))) {
+            try {
+                artifacts.addAll(doResolve(coordinates));
+                graphs.put(key, coordinates);
+            } catch (RuntimeException e) {
+                // the test JVM will resolve it again and report the failure
+                getLogger().warn("Failed to resolve {}, it will be resolved at test time", key, e);
+            }
+        }
+        resolved.put(key, artifacts);
+        return artifacts;
+    }
+
+    private List<ResolvedArtifactResult> doResolve(List<String> coordinates) {
+        Project project = getProject();
+        ExternalModuleDependency[] dependencies = new ExternalModuleDependency[coordinates.size()];
+        for (int i = 0; i < coordinates.size(); i++) {
+            ExternalModuleDependency dependency =
+                    (ExternalModuleDependency) project.getDependencies().create(coordinates.get(i));
+            String version = dependency.getVersion();
+            // declared coordinates win, like Maven
+            dependency.version(constraint -> constraint.strictly(version));
+            dependencies[i] = dependency;
+        }
+        Configuration configuration = project.getConfigurations().detachedConfiguration(dependencies);
+        configuration.getResolutionStrategy().sortArtifacts(ResolutionStrategy.SortOrder.CONSUMER_FIRST);
+        ObjectFactory objects = project.getObjects();
+        configuration.attributes(attributes -> {
+            attributes.attribute(Usage.USAGE_ATTRIBUTE, objects.named(Usage.class, Usage.JAVA_RUNTIME));
+            attributes.attribute(Category.CATEGORY_ATTRIBUTE, objects.named(Category.class, Category.LIBRARY));
+            attributes.attribute(
+                    LibraryElements.LIBRARY_ELEMENTS_ATTRIBUTE,
+                    objects.named(LibraryElements.class, LibraryElements.JAR));
+            attributes.attribute(Bundling.BUNDLING_ATTRIBUTE, objects.named(Bundling.class, Bundling.EXTERNAL));
+        });
+        List<ResolvedArtifactResult> artifacts =
+                new ArrayList<>(configuration.getIncoming().getArtifacts().getArtifacts());
+        List<String> conflicts = nearestWinsConflicts(
+                configuration.getIncoming().getResolutionResult().getRoot());
+        if (!conflicts.isEmpty()) {
+            getLogger()
+                    .warn(
+                            "Locked versions of {} differ from Maven nearest-wins mediation: {}",
+                            String.join(" ", coordinates),
+                            String.join(", ", conflicts));
+        }
+        return artifacts;
+    }
+
+    /**
+     * Find the modules whose selected version is not the version Maven would select, the version requested nearest to
+     * the root, the first declared one on a tie.
+     *
+     * <p> Only the edges of the resolved graph are walked, so it approximates Maven, which doesn't walk the
+     * dependencies of the versions it rejects.
+     *
+     * @param root root of the resolved graph
+     * @return {@code groupId:artifactId:selected (nearest wins: version)} of each conflict
+     */
+    static List<String> nearestWinsConflicts(ResolvedComponentResult root) {
+        Map<String, String> nearest = new HashMap<>();
+        Map<String, String> selected = new TreeMap<>();
+        Set<ComponentIdentifier> visited = new HashSet<>();
+        Deque<ResolvedComponentResult> queue = new ArrayDeque<>();
+        visited.add(root.getId());
+        queue.add(root);
+        // breadth first, a version found first is nearest
+        while (!queue.isEmpty()) {
+            for (DependencyResult dependency : queue.poll().getDependencies()) {
+                if (!(dependency instanceof ResolvedDependencyResult) || dependency.isConstraint()) {
+                    continue;
+                }
+                ResolvedComponentResult component = ((ResolvedDependencyResult) dependency).getSelected();
+                if (dependency.getRequested() instanceof ModuleComponentSelector
+                        && component.getId() instanceof ModuleComponentIdentifier) {
+                    ModuleComponentSelector requested = (ModuleComponentSelector) dependency.getRequested();
+                    String groupAndArtifact = requested.getGroup() + ":" + requested.getModule();
+                    // versions managed by a platform or ranges are not comparable
+                    if (requested.getVersion().matches("[^\\[\\](),]+")) {
+                        nearest.putIfAbsent(groupAndArtifact, requested.getVersion());
+                    }
+                    selected.put(groupAndArtifact, ((ModuleComponentIdentifier) component.getId()).getVersion());
+                }
+                if (visited.add(component.getId())) {
+                    queue.add(component);
+                }
+            }
+        }
+        List<String> conflicts = new ArrayList<>();
+        for (Map.Entry<String, String> entry : selected.entrySet()) {
+            String version = nearest.get(entry.getKey());
+            if (version != null && !version.equals(entry.getValue())) {
+                conflicts.add(entry.getKey() + ":" + entry.getValue() + " (nearest wins: " + version + ")");
+            }
+        }
+        return conflicts;
+    }
+
+    private void write(Map<String, List<String>> graphs, Map<String, List<ResolvedArtifactResult>> resolved)
+            throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(HEADER);
+        for (String key : graphs.keySet()) {
+            lines.add("[" + key + "]");
+            // the same file may be reached from different roots
+            Map<String, File> files = new LinkedHashMap<>();
+            for (ResolvedArtifactResult artifact : resolved.get(key)) {
+                File file = artifact.getFile();
+                if (file.getName().endsWith(".jar")) {
+                    files.putIfAbsent(file.getAbsolutePath(), file);
+                }
+            }
+            for (File file : files.values()) {
+                lines.add(sha256(file) + "\t" + file.getAbsolutePath());
+            }
+        }
+        File lockfile = getLockfile().get().getAsFile();
+        Files.createDirectories(lockfile.getParentFile().toPath());
+        Files.write(lockfile.toPath(), lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Same as {@code ModifiedClassPathClassLoaderBuilder#splitIntoGraphs}, the keys must match, which is verified by
+     * {@code ClasspathScannerTest#splitIntoGraphs_sameAsTestJvm}.
+     */
+    static List<List<String>> splitIntoGraphs(List<String> coordinates) {
+        List<List<String>> graphs = new ArrayList<>();
+        LinkedList<String> graph = new LinkedList<>();
+        Set<String> groupAndArtifacts = new HashSet<>();
+        for (String coordinate : coordinates) {
+            String groupAndArtifact = coordinate.substring(0, Math.max(0, coordinate.lastIndexOf(':')));
+            if (!groupAndArtifacts.add(groupAndArtifact)) {
+                graphs.add(graph);
+                graph = new LinkedList<>();
+                groupAndArtifacts.clear();
+                groupAndArtifacts.add(groupAndArtifact);
+            }
+            graph.addFirst(coordinate);
+        }
+        if (!graph.isEmpty()) {
+            graphs.add(graph);
+        }
+        return graphs;
+    }
+
+    static String module(ModuleComponentIdentifier id) {
+        return id.getGroup() + ":" + id.getModule() + ":" + id.getVersion();
+    }
+
+    private static String sha256(File file) {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                digest.update(buffer, 0, n);
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package cr.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.result.DependencyResult;
+import org.gradle.api.artifacts.result.ResolvedArtifactResult;
+import org.gradle.api.artifacts.result.ResolvedComponentResult;
+import org.gradle.api.artifacts.result.ResolvedDependencyResult;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Writes the exact coordinates and direct dependencies of the jars on the test runtime classpath, which are read by
+ * {@code cr.ClasspathMetadata} at test time instead of guessing coordinates from the jar paths.
+ *
+ * @author Freeman
+ */
+public abstract class ClasspathMetadataTask extends DefaultTask {
+
+    static final String HEADER = "# classpath-replacer metadata v1";
+
+    /**
+     * Metadata lines, one per module jar of the test runtime classpath, see {@link #entries(Configuration)}.
+     */
+    @Input
+    public abstract ListProperty<String> getEntries();
+
+    @OutputFile
+    public abstract RegularFileProperty getMetadata();
+
+    @TaskAction
+    public void write() throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(HEADER);
+        lines.addAll(getEntries().get());
+        File metadata = getMetadata().get().getAsFile();
+        Files.createDirectories(metadata.getParentFile().toPath());
+        Files.write(metadata.toPath(), lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Build the metadata lines of the resolved configuration, in classpath order.
+     *
+     * <p> Each line is {@code path \t groupId:artifactId:version \t direct dependencies (joined by a space)},
+     * project dependencies are skipped, they are not jars in a repository.
+     */
+    static List<String> entries(Configuration configuration) {
+        Map<ComponentIdentifier, Set<String>> dependencies = new HashMap<>();
+        for (ResolvedComponentResult component :
+                configuration.getIncoming().getResolutionResult().getAllComponents()) {
+            Set<String> direct = new TreeSet<>();
+            for (DependencyResult dependency : component.getDependencies()) {
+                if (dependency instanceof ResolvedDependencyResult) {
+                    ComponentIdentifier id = ((ResolvedDependencyResult) dependency)
+                            .getSelected()
+                            .getId();
+                    if (id instanceof ModuleComponentIdentifier) {
+                        direct.add(ClasspathLockTask.module((ModuleComponentIdentifier) id));
+                    }
+                }
+            }
+            dependencies.put(component.getId(), direct);
+        }
+        List<String> entries = new ArrayList<>();
+        for (ResolvedArtifactResult artifact :
+                configuration.getIncoming().getArtifacts().getArtifacts()) {
+            ComponentIdentifier id = artifact.getId().getComponentIdentifier();
+            if (!(id instanceof ModuleComponentIdentifier)) {
+                continue;
+            }
+            entries.add(artifact.getFile().getAbsolutePath() + "\t"
+                    + ClasspathLockTask.module((ModuleComponentIdentifier) id) + "\t"
+                    + String.join(" ", dependencies.getOrDefault(id, new TreeSet<>())));
+        }
+        return entries;
+    }
+}
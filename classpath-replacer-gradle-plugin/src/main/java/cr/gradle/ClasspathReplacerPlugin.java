@@ -0,0 +1,98 @@
+package cr.gradle;
+
+import java.util.Set;
+import java.util.TreeSet;
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.result.ResolvedComponentResult;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.tasks.SourceSet;
+import org.gradle.api.tasks.SourceSetContainer;
+import org.gradle.api.tasks.TaskProvider;
+import org.gradle.api.tasks.testing.Test;
+
+/**
+ * Pre-resolves the {@code @Classpath} coordinates of the test source set at build time.
+ *
+ * <p> Registers the {@value #LOCK_TASK_NAME} task, and passes the generated lockfile to the {@code test} task via
+ * {@code -Dclasspath-replacer.lockfile}, so that the test JVM doesn't resolve anything remotely.
+ *
+ * <p> Registers the {@value #METADATA_TASK_NAME} task, and passes the coordinates of the test runtime classpath to the
+ * {@code test} task via {@code -Dclasspath-replacer.metadata}, so that excludes don't guess coordinates from jar paths.
+ *
+ * <p> Not published yet, include the build of this repository by {@code pluginManagement { includeBuild(...) }}:
+ * <pre>{@code
+ * plugins {
+ *     id 'io.github.danielliu1123.classpath-replacer'
+ * }
+ * }</pre>
+ *
+ * @author Freeman
+ */
+public class ClasspathReplacerPlugin implements Plugin<Project> {
+
+    public static final String LOCK_TASK_NAME = "classpathReplacerLock";
+    public static final String METADATA_TASK_NAME = "classpathReplacerMetadata";
+
+    @Override
+    public void apply(Project project) {
+        project.getPluginManager().withPlugin("java", plugin -> configure(project));
+    }
+
+    private static void configure(Project project) {
+        SourceSet test =
+                project.getExtensions().getByType(SourceSetContainer.class).getByName(SourceSet.TEST_SOURCE_SET_NAME);
+        Configuration runtimeClasspath =
+                project.getConfigurations().getByName(test.getRuntimeClasspathConfigurationName());
+
+        TaskProvider<ClasspathLockTask> lock = project.getTasks()
+                .register(LOCK_TASK_NAME, ClasspathLockTask.class, task -> {
+                    task.setGroup("verification");
+                    task.setDescription("Resolves @Classpath coordinates of the tests and writes a lockfile.");
+                    task.getClassesDirs().from(test.getOutput().getClassesDirs());
+                    task.getRuntimeModules()
+                            .set(project.provider(() -> modules(runtimeClasspath
+                                    .getIncoming()
+                                    .getResolutionResult()
+                                    .getAllComponents())));
+                    task.getLockfile()
+                            .set(project.getLayout()
+                                    .getBuildDirectory()
+                                    .file("classpath-replacer/classpath-replacer.lock"));
+                });
+
+        TaskProvider<ClasspathMetadataTask> metadata = project.getTasks()
+                .register(METADATA_TASK_NAME, ClasspathMetadataTask.class, task -> {
+                    task.setGroup("verification");
+                    task.setDescription("Writes the coordinates of the jars on the test runtime classpath.");
+                    task.getEntries().set(project.provider(() -> ClasspathMetadataTask.entries(runtimeClasspath)));
+                    task.getMetadata()
+                            .set(project.getLayout()
+                                    .getBuildDirectory()
+                                    .file("classpath-replacer/classpath-metadata.txt"));
+                });
+
+        project.getTasks().named(JavaPlugin.TEST_TASK_NAME, Test.class, task -> {
+            task.getJvmArgumentProviders()
+                    .add(new SystemPropertyFileArgumentProvider(
+                            SystemPropertyFileArgumentProvider.LOCKFILE_PROPERTY,
+                            lock.flatMap(ClasspathLockTask::getLockfile)));
+            task.getJvmArgumentProviders()
+                    .add(new SystemPropertyFileArgumentProvider(
+                            SystemPropertyFileArgumentProvider.METADATA_PROPERTY,
+                            metadata.flatMap(ClasspathMetadataTask::getMetadata)));
+        });
+    }
+
+    private static Set<String> modules(Set<ResolvedComponentResult> components) {
+        Set<String> modules = new TreeSet<>();
+        for (ResolvedComponentResult component : components) {
+            if (component.getId() instanceof ModuleComponentIdentifier) {
+                modules.add(ClasspathLockTask.module((ModuleComponentIdentifier) component.getId()));
+            }
+        }
+        return modules;
+    }
+}
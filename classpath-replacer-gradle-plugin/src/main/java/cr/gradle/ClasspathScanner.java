@@ -0,0 +1,128 @@
+package cr.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Finds {@code @Classpath} usages in compiled classes, classes are read as bytecode, not loaded.
+ *
+ * @author Freeman
+ */
+final class ClasspathScanner {
+
+    static final String CLASSPATH_DESCRIPTOR = "Lcr/Classpath;";
+
+    private ClasspathScanner() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Scan all class files in the given directories.
+     *
+     * @param classesDirs class directories
+     * @return usages, in the order of the class files (sorted by path) and their declarations
+     * @throws IOException if a class file can't be read
+     */
+    static List<Usage> scan(Iterable<File> classesDirs) throws IOException {
+        List<Usage> usages = new ArrayList<>();
+        for (File dir : classesDirs) {
+            if (!dir.isDirectory()) {
+                continue;
+            }
+            List<Path> classFiles;
+            try (Stream<Path> paths = Files.walk(dir.toPath())) {
+                classFiles = paths.filter(path -> path.toString().endsWith(".class"))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+            for (Path classFile : classFiles) {
+                try (InputStream in = Files.newInputStream(classFile)) {
+                    scan(in, usages);
+                }
+            }
+        }
+        return usages;
+    }
+
+    static void scan(InputStream classFile, List<Usage> usages) throws IOException {
+        new ClassReader(classFile)
+                .accept(
+                        new ClassVisitor(Opcodes.ASM9) {
+                            @Override
+                            public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                                return CLASSPATH_DESCRIPTOR.equals(descriptor) ? new UsageVisitor(usages) : null;
+                            }
+
+                            @Override
+                            public MethodVisitor visitMethod(
+                                    int access, String name, String descriptor, String signature, String[] exceptions) {
+                                return new MethodVisitor(Opcodes.ASM9) {
+                                    @Override
+                                    public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                                        return CLASSPATH_DESCRIPTOR.equals(descriptor)
+                                                ? new UsageVisitor(usages)
+                                                : null;
+                                    }
+                                };
+                            }
+                        },
+                        ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+    }
+
+    /**
+     * One {@code @Classpath} annotation.
+     */
+    static final class Usage {
+        final List<String> add = new ArrayList<>();
+        final List<String> exclude = new ArrayList<>();
+        boolean excludeTransitive;
+    }
+
+    private static final class UsageVisitor extends AnnotationVisitor {
+        private final List<Usage> usages;
+        private final Usage usage = new Usage();
+
+        private UsageVisitor(List<Usage> usages) {
+            super(Opcodes.ASM9);
+            this.usages = usages;
+        }
+
+        @Override
+        public void visit(String name, Object value) {
+            if ("excludeTransitive".equals(name)) {
+                usage.excludeTransitive = Boolean.TRUE.equals(value);
+            }
+        }
+
+        @Override
+        public AnnotationVisitor visitArray(String name) {
+            List<String> values = "add".equals(name) ? usage.add : "exclude".equals(name) ? usage.exclude : null;
+            if (values == null) {
+                return null;
+            }
+            return new AnnotationVisitor(Opcodes.ASM9) {
+                @Override
+                public void visit(String ignored, Object value) {
+                    values.add(String.valueOf(value));
+                }
+            };
+        }
+
+        @Override
+        public void visitEnd() {
+            usages.add(usage);
+        }
+    }
+}
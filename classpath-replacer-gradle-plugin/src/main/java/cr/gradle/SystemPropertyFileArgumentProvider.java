@@ -0,0 +1,82 @@
+package cr.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.process.CommandLineArgumentProvider;
+
+/**
+ * Passes a generated file to the test JVM as a system property, the file is also an input of the test task.
+ *
+ * <p> The generated files contain absolute paths of jars in the Gradle cache of this machine, the input is the content
+ * with each absolute path reduced to its file name, so the test task stays relocatable for the build cache. Jars are
+ * still identified by their checksums (lockfile) or coordinates (metadata).
+ *
+ * @author Freeman
+ */
+class SystemPropertyFileArgumentProvider implements CommandLineArgumentProvider {
+
+    static final String LOCKFILE_PROPERTY = "classpath-replacer.lockfile";
+    static final String METADATA_PROPERTY = "classpath-replacer.metadata";
+
+    private final String property;
+    private final Provider<RegularFile> file;
+
+    SystemPropertyFileArgumentProvider(String property, Provider<RegularFile> file) {
+        this.property = property;
+        this.file = file;
+    }
+
+    @Input
+    public String getProperty() {
+        return property;
+    }
+
+    @Internal
+    public Provider<RegularFile> getFile() {
+        return file;
+    }
+
+    /**
+     * Content of the file without absolute paths, also carries the dependency on the task generating the file.
+     */
+    @Input
+    public Provider<List<String>> getContent() {
+        return file.map(regularFile -> normalize(regularFile.getAsFile()));
+    }
+
+    @Override
+    public Iterable<String> asArguments() {
+        return Collections.singletonList(
+                "-D" + property + "=" + file.get().getAsFile().getAbsolutePath());
+    }
+
+    static List<String> normalize(File file) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + file, e);
+        }
+        List<String> result = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            String[] columns = line.split("\t", -1);
+            for (int i = 0; i < columns.length; i++) {
+                if (new File(columns[i]).isAbsolute()) {
+                    columns[i] = new File(columns[i]).getName();
+                }
+            }
+            result.add(String.join("\t", columns));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,145 @@
+package cr.gradle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cr.Classpath;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.tasks.testing.Test;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link ClasspathReplacerPlugin} tester.
+ */
+class ClasspathReplacerPluginTest {
+
+    @TempDir
+    Path tempDir;
+
+    @org.junit.jupiter.api.Test
+    void testApply() {
+        Project project =
+                ProjectBuilder.builder().withProjectDir(tempDir.toFile()).build();
+        project.getPluginManager().apply("java");
+        project.getPluginManager().apply(ClasspathReplacerPlugin.class);
+
+        Test test = (Test) project.getTasks().getByName("test");
+        assertEquals(
+                Arrays.asList(
+                        SystemPropertyFileArgumentProvider.LOCKFILE_PROPERTY,
+                        SystemPropertyFileArgumentProvider.METADATA_PROPERTY),
+                test.getJvmArgumentProviders().stream()
+                        .filter(SystemPropertyFileArgumentProvider.class::isInstance)
+                        .map(provider -> ((SystemPropertyFileArgumentProvider) provider).getProperty())
+                        .collect(Collectors.toList()));
+        assertTrue(project.getTasks().getByName(ClasspathReplacerPlugin.LOCK_TASK_NAME) instanceof ClasspathLockTask);
+        assertTrue(
+                project.getTasks().getByName(ClasspathReplacerPlugin.METADATA_TASK_NAME)
+                        instanceof ClasspathMetadataTask);
+        assertTrue(test.getTaskDependencies()
+                .getDependencies(test)
+                .containsAll(Arrays.asList(
+                        project.getTasks().getByName(ClasspathReplacerPlugin.LOCK_TASK_NAME),
+                        project.getTasks().getByName(ClasspathReplacerPlugin.METADATA_TASK_NAME))));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testNormalize() throws IOException {
+        Path jar = tempDir.resolve("caches/gson-2.10.1.jar").toAbsolutePath();
+        Path file = Files.write(
+                tempDir.resolve("classpath-metadata.txt"),
+                Arrays.asList(
+                        ClasspathMetadataTask.HEADER, jar + "\tcom.google.code.gson:gson:2.10.1\t", "sha256\t" + jar),
+                StandardCharsets.UTF_8);
+
+        assertEquals(
+                Arrays.asList(
+                        ClasspathMetadataTask.HEADER,
+                        "gson-2.10.1.jar\tcom.google.code.gson:gson:2.10.1\t",
+                        "sha256\tgson-2.10.1.jar"),
+                SystemPropertyFileArgumentProvider.normalize(file.toFile()));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testLock() throws IOException {
+        Project project =
+                ProjectBuilder.builder().withProjectDir(tempDir.toFile()).build();
+        project.getPluginManager().apply("java");
+        project.getPluginManager().apply(ClasspathReplacerPlugin.class);
+        project.getRepositories().mavenCentral();
+        Path classes = Files.createDirectories(tempDir.resolve("classes"));
+        try (InputStream in =
+                ClasspathReplacerPluginTest.class.getResourceAsStream("ClasspathReplacerPluginTest$Fixture.class")) {
+            Files.copy(in, classes.resolve("Fixture.class"), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        ClasspathLockTask lock =
+                (ClasspathLockTask) project.getTasks().getByName(ClasspathReplacerPlugin.LOCK_TASK_NAME);
+        lock.getClassesDirs().setFrom(classes.toFile());
+        lock.lock();
+
+        List<String> lines =
+                Files.readAllLines(lock.getLockfile().get().getAsFile().toPath(), StandardCharsets.UTF_8);
+        assertEquals(ClasspathLockTask.HEADER, lines.get(0));
+        assertEquals(
+                "[com.google.code.gson:gson:2.10.1 com.fasterxml.jackson.core:jackson-annotations:2.14.1]",
+                lines.get(1));
+        assertTrue(lines.get(2).endsWith("gson-2.10.1.jar"));
+        assertTrue(lines.get(3).endsWith("jackson-annotations-2.14.1.jar"));
+        assertEquals(4, lines.size());
+    }
+
+    @org.junit.jupiter.api.Test
+    void testNearestWinsConflicts() {
+        Project project =
+                ProjectBuilder.builder().withProjectDir(tempDir.toFile()).build();
+        project.getRepositories().mavenCentral();
+        // both request slf4j-api at depth 2, Maven takes the first one, Gradle the highest one
+        Configuration configuration = project.getConfigurations()
+                .detachedConfiguration(
+                        project.getDependencies().create("ch.qos.logback:logback-classic:1.2.11"),
+                        project.getDependencies().create("org.slf4j:slf4j-simple:1.7.36"));
+
+        assertEquals(
+                Collections.singletonList("org.slf4j:slf4j-api:1.7.36 (nearest wins: 1.7.32)"),
+                ClasspathLockTask.nearestWinsConflicts(
+                        configuration.getIncoming().getResolutionResult().getRoot()));
+    }
+
+    @org.junit.jupiter.api.Test
+    void testMetadata() throws IOException {
+        Project project =
+                ProjectBuilder.builder().withProjectDir(tempDir.toFile()).build();
+        project.getPluginManager().apply("java");
+        project.getPluginManager().apply(ClasspathReplacerPlugin.class);
+        project.getRepositories().mavenCentral();
+        project.getDependencies().add("testImplementation", "org.slf4j:slf4j-simple:1.7.36");
+
+        ClasspathMetadataTask metadata =
+                (ClasspathMetadataTask) project.getTasks().getByName(ClasspathReplacerPlugin.METADATA_TASK_NAME);
+        metadata.write();
+
+        List<String> lines =
+                Files.readAllLines(metadata.getMetadata().get().getAsFile().toPath(), StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        assertEquals(ClasspathMetadataTask.HEADER, lines.get(0));
+        assertTrue(lines.get(1)
+                .endsWith("slf4j-simple-1.7.36.jar\torg.slf4j:slf4j-simple:1.7.36\torg.slf4j:slf4j-api:1.7.36"));
+        assertTrue(lines.get(2).endsWith("slf4j-api-1.7.36.jar\torg.slf4j:slf4j-api:1.7.36\t"));
+    }
+
+    @Classpath(add = {"com.fasterxml.jackson.core:jackson-annotations:2.14.1", "com.google.code.gson:gson:2.10.1"})
+    static class Fixture {}
+}
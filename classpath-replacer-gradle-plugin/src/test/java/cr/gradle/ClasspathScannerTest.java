@@ -0,0 +1,83 @@
+package cr.gradle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cr.Classpath;
+import cr.ModifiedClassPathClassLoaderBuilder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link ClasspathScanner} tester.
+ */
+class ClasspathScannerTest {
+
+    @Test
+    void testScan() throws IOException {
+        List<ClasspathScanner.Usage> usages = new ArrayList<>();
+        try (InputStream in = ClasspathScannerTest.class.getResourceAsStream("ClasspathScannerTest$Fixture.class")) {
+            ClasspathScanner.scan(in, usages);
+        }
+
+        assertEquals(3, usages.size());
+        assertEquals(Collections.singletonList("com.google.code.gson:gson:2.8.9"), usages.get(0).add);
+        assertFalse(usages.get(0).excludeTransitive);
+        assertEquals(
+                Arrays.asList("com.google.code.gson:gson:2.9.0", "com.google.code.gson:gson:2.10.1"),
+                usages.get(1).add);
+        assertEquals(Collections.singletonList("org.slf4j:slf4j-api"), usages.get(1).exclude);
+        assertTrue(usages.get(1).excludeTransitive);
+    }
+
+    @Test
+    void testSplitIntoGraphs() {
+        assertEquals(
+                Arrays.asList(Arrays.asList("b:b:1", "a:a:1"), Arrays.asList("a:a:2")),
+                ClasspathLockTask.splitIntoGraphs(Arrays.asList("a:a:1", "b:b:1", "a:a:2")));
+    }
+
+    /**
+     * The lockfile keys must match the graphs the test JVM resolves, otherwise every lookup misses.
+     */
+    @Test
+    void splitIntoGraphs_sameAsTestJvm() throws Exception {
+        Method testJvm = ModifiedClassPathClassLoaderBuilder.class.getDeclaredMethod("splitIntoGraphs", List.class);
+        testJvm.setAccessible(true);
+        List<ClasspathScanner.Usage> usages = new ArrayList<>();
+        try (InputStream in = ClasspathScannerTest.class.getResourceAsStream("ClasspathScannerTest$Fixture.class")) {
+            ClasspathScanner.scan(in, usages);
+        }
+        List<Classpath> annotations = Arrays.asList(
+                Fixture.class.getAnnotation(Classpath.class),
+                Fixture.class.getDeclaredMethod("method").getAnnotation(Classpath.class),
+                Fixture.class.getDeclaredMethod("repeated").getAnnotation(Classpath.class));
+
+        assertEquals(annotations.size(), usages.size());
+        for (int i = 0; i < annotations.size(); i++) {
+            assertEquals(
+                    testJvm.invoke(null, Arrays.asList(annotations.get(i).add())),
+                    ClasspathLockTask.splitIntoGraphs(usages.get(i).add));
+        }
+    }
+
+    @Classpath(add = "com.google.code.gson:gson:2.8.9")
+    static class Fixture {
+
+        @Classpath(
+                add = {"com.google.code.gson:gson:2.9.0", "com.google.code.gson:gson:2.10.1"},
+                exclude = "org.slf4j:slf4j-api",
+                excludeTransitive = true)
+        void method() {}
+
+        @Classpath(add = {"a:a:1", "b:b:1", "a:a:2", "c:c:1"})
+        void repeated() {}
+    }
+}
@@ -61,4 +61,14 @@ public @interface Classpath {
      * @return whether to exclude the transitive dependencies.
      */
     boolean excludeTransitive() default false;
+
+    /**
+     * Package or class name prefixes to load by the application class loader instead of the modified classpath, like
+     * the test framework classes.
+     *
+     * <p> Useful for classes shared with the code outside the test, e.g. a test extension holding state across tests.
+     *
+     * @return the prefixes to load by the application class loader.
+     */
+    String[] parentFirst() default {};
 }
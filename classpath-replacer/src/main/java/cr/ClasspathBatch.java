@@ -0,0 +1,246 @@
+package cr;
+
+import cr.util.Config;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.discovery.DiscoverySelectors;
+import org.junit.platform.engine.discovery.MethodSelector;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+
+/**
+ * Batch mode: runs all test methods of a class that share a classpath variant in one nested launch.
+ *
+ * <p> Without batching, each test method is launched on its own in the modified classpath, so {@code @BeforeAll},
+ * {@code @AfterAll} and the static initializers of the reloaded test class run once per method. With batching, the
+ * first method of a variant (the class level {@link Classpath}, or the same method level {@link Classpath}) launches
+ * all methods of the variant selected by the current test plan, and each method reports its own result from that
+ * launch. Methods of a batch share the static state of the test class, like in a normal test run.
+ *
+ * <p> Registered automatically by {@code META-INF/services/org.junit.platform.launcher.TestExecutionListener} to know
+ * the test plan, set {@code -Dclasspath-replacer.batch.enabled=true} to enable it.
+ *
+ * @author Freeman
+ */
+public class ClasspathBatch implements TestExecutionListener {
+
+    static final String ENABLED_PROPERTY = Config.PREFIX + "batch.enabled";
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(ClasspathBatch.class);
+
+    /**
+     * Test plans being executed, more than one if launchers are nested.
+     */
+    private static final List<TestPlan> plans = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void testPlanExecutionStarted(TestPlan testPlan) {
+        if (!ClasspathExtension.isModifiedClassPathClassLoader(ClasspathBatch.class.getClassLoader())) {
+            plans.add(testPlan);
+        }
+    }
+
+    @Override
+    public void testPlanExecutionFinished(TestPlan testPlan) {
+        plans.remove(testPlan);
+    }
+
+    static boolean isEnabled() {
+        return Config.getBoolean(ENABLED_PROPERTY, false);
+    }
+
+    /**
+     * Get the result of the test method from the batch of its variant, launch the batch if it's the first method.
+     *
+     * @param extensionContext    context of the test method
+     * @param testMethod          test method
+     * @param methodLevel         nullable, method level {@link Classpath} of the test method
+     * @param originalClassLoader class loader of the test class
+     * @return the result, or null if the method can't be batched
+     */
+    static TestExecutionResult execute(
+            ExtensionContext extensionContext,
+            Method testMethod,
+            Classpath methodLevel,
+            ClassLoader originalClassLoader) {
+        ExtensionContext classContext = ClasspathExtension.classContext(extensionContext);
+        Key key = new Key(extensionContext.getRequiredTestClass(), methodLevel);
+        Batch batch = classContext
+                .getStore(NAMESPACE)
+                .getOrComputeIfAbsent(key, k -> new Batch(k, classContext), Batch.class);
+        return batch.resultOf(testMethod, originalClassLoader);
+    }
+
+    private static String signature(String methodName, String parameterTypes) {
+        return methodName + "(" + parameterTypes + ")";
+    }
+
+    private static final class Key {
+        private final Class<?> testClass;
+        private final Classpath methodLevel;
+
+        Key(Class<?> testClass, Classpath methodLevel) {
+            this.testClass = testClass;
+            this.methodLevel = methodLevel;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) o;
+            return testClass == that.testClass && Objects.equals(methodLevel, that.methodLevel);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(testClass, methodLevel);
+        }
+    }
+
+    /**
+     * Methods of a test class sharing a classpath variant, launched once.
+     */
+    private static final class Batch implements ExtensionContext.Store.CloseableResource {
+        private final Key key;
+        private final ExtensionContext classContext;
+
+        /**
+         * Guarded by this, null until launched, method signature -> result.
+         */
+        private Map<String, TestExecutionResult> results;
+
+        /**
+         * Nullable, the method level loader owned by this batch.
+         */
+        private ModifiedClassPathClassLoader methodLevelLoader;
+
+        Batch(Key key, ExtensionContext classContext) {
+            this.key = key;
+            this.classContext = classContext;
+        }
+
+        synchronized TestExecutionResult resultOf(Method testMethod, ClassLoader originalClassLoader) {
+            if (results == null) {
+                results = launch(originalClassLoader);
+            }
+            MethodSource source = MethodSource.from(testMethod);
+            return results.get(signature(source.getMethodName(), source.getMethodParameterTypes()));
+        }
+
+        private Map<String, TestExecutionResult> launch(ClassLoader originalClassLoader) {
+            List<MethodSource> methods = selectedMethods();
+            if (methods.isEmpty()) {
+                return new HashMap<>();
+            }
+
+            ModifiedClassPathClassLoader loader;
+            if (key.methodLevel == null) {
+                loader = ClasspathExtension.getClassLevelClassLoader(classContext, key.testClass, originalClassLoader);
+            } else {
+                methodLevelLoader = ClasspathExtension.builder(key.methodLevel, originalClassLoader)
+                        .build();
+                loader = methodLevelLoader;
+            }
+
+            Thread thread = Thread.currentThread();
+            ClassLoader contextClassLoader = thread.getContextClassLoader();
+            thread.setContextClassLoader(loader);
+            try {
+                Class<?> testClass = loader.loadClass(key.testClass.getName());
+                List<MethodSelector> selectors = new ArrayList<>();
+                for (MethodSource method : methods) {
+                    selectors.add(DiscoverySelectors.selectMethod(
+                            testClass, method.getMethodName(), method.getMethodParameterTypes()));
+                }
+                LauncherDiscoveryRequest request =
+                        NestedLauncher.request().selectors(selectors).build();
+                ResultCollector collector = new ResultCollector();
+                NestedLauncher.of(loader).execute(request, collector);
+                return collector.results;
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                thread.setContextClassLoader(contextClassLoader);
+            }
+        }
+
+        /**
+         * Methods of the variant selected by the test plan being executed.
+         */
+        @SuppressWarnings("deprecation")
+        private List<MethodSource> selectedMethods() {
+            List<MethodSource> result = new ArrayList<>();
+            String classId = classContext.getUniqueId();
+            for (TestPlan plan : plans) {
+                // getChildren(UniqueId) requires JUnit Platform 1.10
+                for (TestIdentifier child : plan.getChildren(classId)) {
+                    Optional<TestSource> source = child.getSource();
+                    if (!child.isTest() || !source.isPresent() || !(source.get() instanceof MethodSource)) {
+                        continue;
+                    }
+                    MethodSource method = (MethodSource) source.get();
+                    if (Objects.equals(variantOf(method), key.methodLevel)) {
+                        result.add(method);
+                    }
+                }
+                if (!result.isEmpty()) {
+                    break;
+                }
+            }
+            return result;
+        }
+
+        private Classpath variantOf(MethodSource method) {
+            try {
+                return method.getJavaMethod().getAnnotation(Classpath.class);
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (methodLevelLoader != null) {
+                ModifiedClassLoaderCache.release(methodLevelLoader);
+            }
+        }
+    }
+
+    /**
+     * Collects the results of the test methods, the first failure wins if a method has more than one result.
+     */
+    private static final class ResultCollector implements TestExecutionListener {
+        private final Map<String, TestExecutionResult> results = new HashMap<>();
+
+        @Override
+        public synchronized void executionFinished(TestIdentifier identifier, TestExecutionResult result) {
+            Optional<TestSource> source = identifier.getSource();
+            if (!identifier.isTest() || !source.isPresent() || !(source.get() instanceof MethodSource)) {
+                return;
+            }
+            MethodSource method = (MethodSource) source.get();
+            String signature = signature(method.getMethodName(), method.getMethodParameterTypes());
+            TestExecutionResult existing = results.get(signature);
+            if (existing == null || existing.getStatus() == TestExecutionResult.Status.SUCCESSFUL) {
+                results.put(signature, result);
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package cr;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * What a classpath entry defines and what it may reference, used by {@link ClasspathLayers} to decide which entries
+ * can be loaded by a base layer that can't see the variant.
+ *
+ * <ul>
+ *     <li>{@link #packages}: packages of the classes, e.g. {@code com/google/gson}</li>
+ *     <li>{@link #references}: every package-like name in the constant pools of the classes, including string
+ *     constants, so direct, optional ({@code @ConditionalOnClass}) and {@code Class.forName("...")} references with
+ *     literal names are all found</li>
+ *     <li>{@link #services}: packages of the service interfaces declared in {@code META-INF/services}</li>
+ * </ul>
+ *
+ * <p> Jars are scanned once per JVM unless they are modified, directories are scanned on each use.
+ *
+ * @author Freeman
+ */
+final class ClasspathContents {
+
+    private static final String SERVICES_PREFIX = "META-INF/services/";
+    private static final String CLASS_SUFFIX = ".class";
+
+    /**
+     * Jar url -> contents.
+     */
+    private static final ConcurrentMap<String, ClasspathContents> jars = new ConcurrentHashMap<>();
+
+    final Set<String> packages;
+    final Set<String> references;
+    final Set<String> services;
+
+    private final long lastModified;
+    private final long length;
+
+    private ClasspathContents(
+            Set<String> packages, Set<String> references, Set<String> services, long lastModified, long length) {
+        this.packages = Collections.unmodifiableSet(packages);
+        this.references = Collections.unmodifiableSet(references);
+        this.services = Collections.unmodifiableSet(services);
+        this.lastModified = lastModified;
+        this.length = length;
+    }
+
+    /**
+     * Scan the classpath entry.
+     *
+     * @param url jar or directory url
+     * @return the contents, or null if the entry can't be read
+     */
+    static ClasspathContents of(URL url) {
+        File file = ClasspathEntry.toFile(url);
+        if (file == null) {
+            return null;
+        }
+        try {
+            if (file.isDirectory()) {
+                return scanDirectory(file.toPath());
+            }
+            ClasspathContents cached = jars.get(url.toString());
+            if (cached != null && cached.lastModified == file.lastModified() && cached.length == file.length()) {
+                return cached;
+            }
+            ClasspathContents contents = scanJar(file);
+            jars.put(url.toString(), contents);
+            return contents;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ClasspathContents scanJar(File file) throws IOException {
+        long lastModified = file.lastModified();
+        long length = file.length();
+        Set<String> packages = new HashSet<>();
+        Set<String> references = new HashSet<>();
+        Set<String> services = new HashSet<>();
+        try (JarFile jarFile = new JarFile(file)) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                String name = entry.getName();
+                try (InputStream in = jarFile.getInputStream(entry)) {
+                    add(name, in, entry.getSize(), packages, references, services);
+                }
+            }
+        }
+        return new ClasspathContents(packages, references, services, lastModified, length);
+    }
+
+    private static ClasspathContents scanDirectory(Path directory) throws IOException {
+        Set<String> packages = new HashSet<>();
+        Set<String> references = new HashSet<>();
+        Set<String> services = new HashSet<>();
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for (Path path : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                    String name = directory.relativize(path).toString().replace(File.separatorChar, '/');
+                    try (InputStream in = Files.newInputStream(path)) {
+                        add(name, in, Files.size(path), packages, references, services);
+                    }
+                }
+            }
+        }
+        return new ClasspathContents(packages, references, services, 0, 0);
+    }
+
+    private static void add(
+            String name, InputStream in, long size, Set<String> packages, Set<String> references, Set<String> services)
+            throws IOException {
+        if (name.startsWith(SERVICES_PREFIX)) {
+            services.add(SharedJarFiles.packageOf(
+                    name.substring(SERVICES_PREFIX.length()).replace('.', '/')));
+        } else if (name.endsWith(CLASS_SUFFIX)) {
+            // versioned entries of multi-release jars belong to the same packages as their base entries
+            if (!name.startsWith("META-INF/") && !name.endsWith("module-info.class")) {
+                packages.add(SharedJarFiles.packageOf(name));
+            }
+            if (!readReferences(LoaderClasspath.readAllBytes(in, size), references)) {
+                throw new IOException("Unsupported class file: " + name);
+            }
+        }
+    }
+
+    /**
+     * Collect the package-like names of the constant pool of a class file.
+     *
+     * @return false if the constant pool can't be parsed
+     */
+    static boolean readReferences(byte[] bytes, Set<String> references) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != 0xCAFEBABE) {
+            return false;
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+        int count = in.readUnsignedShort();
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1: // Utf8
+                    addNames(in.readUTF(), references);
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    skip(in, 2);
+                    break;
+                case 15: // MethodHandle
+                    skip(in, 3);
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    skip(in, 4);
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    skip(in, 8);
+                    i++;
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private static void skip(DataInputStream in, int n) throws IOException {
+        if (in.skipBytes(n) != n) {
+            throw new EOFException();
+        }
+    }
+
+    /**
+     * Add the packages of the names in the string, like {@code com/google/gson} for {@code Lcom/google/gson/Gson;} or
+     * {@code com.google.gson.Gson}. Over-approximated, every prefix of a name is added.
+     */
+    private static void addNames(String value, Set<String> references) {
+        int start = -1;
+        for (int i = 0; i <= value.length(); i++) {
+            char c = i < value.length() ? value.charAt(i) : ';';
+            if (Character.isJavaIdentifierPart(c) || c == '/' || c == '.') {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                addName(value.substring(start, i), references);
+                start = -1;
+            }
+        }
+    }
+
+    private static void addName(String name, Set<String> references) {
+        if (name.indexOf('/') < 0 && name.indexOf('.') < 0) {
+            return;
+        }
+        String normalized = name.replace('.', '/');
+        addPrefixes(normalized, references);
+        if (normalized.length() > 1 && (normalized.charAt(0) == 'L')) {
+            // descriptor, e.g. Lcom/google/gson/Gson
+            addPrefixes(normalized.substring(1), references);
+        }
+    }
+
+    private static void addPrefixes(String name, Set<String> references) {
+        references.add(name);
+        for (int i = name.indexOf('/'); i > 0; i = name.indexOf('/', i + 1)) {
+            references.add(name.substring(0, i));
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package cr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * A classpath entry parsed once, with the coordinates of the jar when they can be determined exactly.
+ *
+ * <p> Coordinates are taken from, in order:
+ * <ul>
+ *     <li>the Gradle module cache layout, like {@code files-2.1/com.google.code.gson/gson/2.8.9/<hash>/gson-2.8.9.jar}</li>
+ *     <li>the Maven local repository layout, like {@code ~/.m2/repository/com/google/code/gson/gson/2.8.9/gson-2.8.9.jar}</li>
+ *     <li>{@code META-INF/maven/<groupId>/<artifactId>/pom.properties} in the jar, only when it matches the jar name,
+ *     shaded jars contain the pom.properties of other artifacts</li>
+ * </ul>
+ *
+ * <p> Entries are cached by url, and parsed again when the size or last modified time of the file changes.
+ *
+ * @author Freeman
+ */
+final class ClasspathEntry {
+
+    private static final String GRADLE_CACHE_MARKER = "/files-2.1/";
+    private static final String MAVEN_REPOSITORY_MARKER = "/repository/";
+    private static final String POM_PROPERTIES_PREFIX = "META-INF/maven/";
+    private static final String POM_PROPERTIES_SUFFIX = "/pom.properties";
+
+    private static final List<String> mavenRepositories = mavenRepositories();
+
+    private static final ConcurrentMap<String, ClasspathEntry> cache = new ConcurrentHashMap<>();
+
+    enum Layout {
+        GRADLE_CACHE,
+        MAVEN_REPOSITORY,
+        POM_PROPERTIES,
+        DIRECTORY,
+        UNKNOWN
+    }
+
+    final URL url;
+    /**
+     * Nullable, null if the url is not a file.
+     */
+    final String fileName;
+    /**
+     * Nullable, null if the coordinates are unknown.
+     */
+    final String groupId;
+
+    final String artifactId;
+    final String version;
+    final Layout layout;
+
+    private final long size;
+    private final long lastModified;
+
+    private ClasspathEntry(
+            URL url,
+            String fileName,
+            String groupId,
+            String artifactId,
+            String version,
+            Layout layout,
+            long size,
+            long lastModified) {
+        this.url = url;
+        this.fileName = fileName;
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.version = version;
+        this.layout = layout;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Get the parsed entry of the url.
+     *
+     * @param url classpath url
+     * @return the entry
+     */
+    static ClasspathEntry of(URL url) {
+        String key = url.toString();
+        File file = toFile(url);
+        long size = file != null ? file.length() : -1;
+        long lastModified = file != null ? file.lastModified() : -1;
+        ClasspathEntry entry = cache.get(key);
+        if (entry == null || entry.size != size || entry.lastModified != lastModified) {
+            entry = parse(url, file, size, lastModified);
+            cache.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * @return groupId:artifactId:version, or null if the coordinates are unknown
+     */
+    String coordinate() {
+        return groupId != null ? groupId + ":" + artifactId + ":" + version : null;
+    }
+
+    /**
+     * @return groupId:artifactId, or null if the coordinates are unknown
+     */
+    String groupAndArtifact() {
+        return groupId != null ? groupId + ":" + artifactId : null;
+    }
+
+    private static ClasspathEntry parse(URL url, File file, long size, long lastModified) {
+        if (file == null) {
+            return new ClasspathEntry(url, null, null, null, null, Layout.UNKNOWN, size, lastModified);
+        }
+        String fileName = file.getName();
+        if (file.isDirectory()) {
+            return new ClasspathEntry(url, fileName, null, null, null, Layout.DIRECTORY, size, lastModified);
+        }
+        String path = file.getAbsolutePath().replace(File.separatorChar, '/');
+
+        int gradle = path.lastIndexOf(GRADLE_CACHE_MARKER);
+        if (gradle >= 0) {
+            // group/artifact/version/hash/file
+            String[] segments =
+                    path.substring(gradle + GRADLE_CACHE_MARKER.length()).split("/");
+            if (segments.length == 5 && isJarOf(fileName, segments[1], segments[2])) {
+                return new ClasspathEntry(
+                        url, fileName, segments[0], segments[1], segments[2], Layout.GRADLE_CACHE, size, lastModified);
+            }
+        }
+
+        String repository = mavenRepository(path);
+        if (repository != null) {
+            // group/path/artifact/version/file
+            String[] segments = path.substring(repository.length()).split("/");
+            int n = segments.length;
+            if (n >= 4 && isJarOf(fileName, segments[n - 3], segments[n - 2])) {
+                return new ClasspathEntry(
+                        url,
+                        fileName,
+                        String.join(".", Arrays.copyOf(segments, n - 3)),
+                        segments[n - 3],
+                        segments[n - 2],
+                        Layout.MAVEN_REPOSITORY,
+                        size,
+                        lastModified);
+            }
+        }
+
+        if (fileName.endsWith(".jar") && file.isFile()) {
+            Properties pom = pomProperties(file, fileName);
+            if (pom != null) {
+                return new ClasspathEntry(
+                        url,
+                        fileName,
+                        pom.getProperty("groupId"),
+                        pom.getProperty("artifactId"),
+                        pom.getProperty("version"),
+                        Layout.POM_PROPERTIES,
+                        size,
+                        lastModified);
+            }
+        }
+        return new ClasspathEntry(url, fileName, null, null, null, Layout.UNKNOWN, size, lastModified);
+    }
+
+    /**
+     * The jar of a Maven artifact is named artifactId-version[-classifier].jar.
+     */
+    private static boolean isJarOf(String fileName, String artifactId, String version) {
+        if (!fileName.startsWith(artifactId + "-" + version)) {
+            return false;
+        }
+        // -classifier.jar or .jar, but not .1.jar (version 2.8 of gson-2.8.1.jar)
+        String rest = fileName.substring(artifactId.length() + version.length() + 1);
+        return rest.startsWith("-") || (rest.startsWith(".") && rest.indexOf('.', 1) < 0);
+    }
+
+    private static String mavenRepository(String path) {
+        for (String repository : mavenRepositories) {
+            if (path.startsWith(repository)) {
+                return repository;
+            }
+        }
+        // repositories configured by settings.xml, like /opt/maven/repository/
+        int index = path.lastIndexOf(MAVEN_REPOSITORY_MARKER);
+        return index >= 0 ? path.substring(0, index + MAVEN_REPOSITORY_MARKER.length()) : null;
+    }
+
+    private static Properties pomProperties(File file, String fileName) {
+        try (JarFile jarFile = new JarFile(file)) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry jarEntry = entries.nextElement();
+                String name = jarEntry.getName();
+                if (!name.startsWith(POM_PROPERTIES_PREFIX) || !name.endsWith(POM_PROPERTIES_SUFFIX)) {
+                    continue;
+                }
+                Properties properties = new Properties();
+                try (InputStream in = jarFile.getInputStream(jarEntry)) {
+                    properties.load(in);
+                }
+                String groupId = properties.getProperty("groupId");
+                String artifactId = properties.getProperty("artifactId");
+                String version = properties.getProperty("version");
+                if (groupId != null
+                        && artifactId != null
+                        && version != null
+                        && isJarOf(fileName, artifactId, version)) {
+                    return properties;
+                }
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // not a valid jar, coordinates are unknown
+        }
+        return null;
+    }
+
+    private static List<String> mavenRepositories() {
+        Set<String> repositories = new LinkedHashSet<>();
+        String local = System.getProperty("maven.repo.local");
+        if (local != null) {
+            repositories.add(normalize(new File(local)));
+        }
+        repositories.add(normalize(new File(System.getProperty("user.home"), ".m2" + File.separator + "repository")));
+        return new ArrayList<>(repositories);
+    }
+
+    private static String normalize(File directory) {
+        return directory.getAbsolutePath().replace(File.separatorChar, '/') + "/";
+    }
+
+    /**
+     * @return the file of a {@code file:} url, or null
+     */
+    static File toFile(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package cr;
 
+import cr.util.Config;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Optional;
@@ -7,12 +8,11 @@ import org.junit.jupiter.api.extension.ExtensionContext;
 import org.junit.jupiter.api.extension.InvocationInterceptor;
 import org.junit.jupiter.api.extension.ReflectiveInvocationContext;
 import org.junit.platform.commons.util.ReflectionUtils;
+import org.junit.platform.engine.DiscoverySelector;
+import org.junit.platform.engine.TestExecutionResult;
 import org.junit.platform.engine.discovery.DiscoverySelectors;
 import org.junit.platform.launcher.Launcher;
 import org.junit.platform.launcher.LauncherDiscoveryRequest;
-import org.junit.platform.launcher.TestPlan;
-import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
-import org.junit.platform.launcher.core.LauncherFactory;
 import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
 import org.junit.platform.launcher.listeners.TestExecutionSummary;
 
@@ -21,6 +21,9 @@ import org.junit.platform.launcher.listeners.TestExecutionSummary;
  */
 public class ClasspathExtension implements InvocationInterceptor {
 
+    private static final ExtensionContext.Namespace NAMESPACE =
+            ExtensionContext.Namespace.create(ClasspathExtension.class);
+
     @Override
     public void interceptBeforeAllMethod(
             Invocation<Void> invocation,
@@ -71,58 +74,141 @@ public class ClasspathExtension implements InvocationInterceptor {
         runTestWithModifiedClassPath(invocationContext, extensionContext);
     }
 
+    @Override
+    public void interceptTestTemplateMethod(
+            Invocation<Void> invocation,
+            ReflectiveInvocationContext<Method> invocationContext,
+            ExtensionContext extensionContext)
+            throws Throwable {
+        // e.g. @ParameterizedTest, @RepeatedTest, each invocation runs in the modified classpath
+        interceptTestMethod(invocation, invocationContext, extensionContext);
+    }
+
     private static void runTestWithModifiedClassPath(
             ReflectiveInvocationContext<Method> invocationContext, ExtensionContext extensionContext) throws Throwable {
         Class<?> testClass = extensionContext.getRequiredTestClass();
         Method testMethod = invocationContext.getExecutable();
-        ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+        Classpath methodLevel = testMethod.getAnnotation(Classpath.class);
 
-        // We only cache Class -> ClassLoader, because the ClassLoader may be different for different test methods
-        ModifiedClassPathClassLoader customizedClassLoader = Optional.ofNullable(
-                        testMethod.getAnnotation(Classpath.class))
-                .map(cr -> buildModifiedClassLoader(cr, originalClassLoader))
-                .orElseGet(() -> getCachedClassLevelClassLoader(testClass, originalClassLoader));
+        // tests of different variants may run in parallel, limit how many variants (class loaders) run at once
+        try (VariantScheduler.Permit ignored = VariantScheduler.enter(methodLevel != null ? methodLevel : testClass)) {
+            runVariant(extensionContext, testClass, testMethod, methodLevel);
+        }
+    }
 
-        Thread.currentThread().setContextClassLoader(customizedClassLoader);
+    private static void runVariant(
+            ExtensionContext extensionContext, Class<?> testClass, Method testMethod, Classpath methodLevel)
+            throws Throwable {
+        // the loader of the test class, not the context class loader, which is per thread and may be changed by
+        // other tests running on the same worker thread
+        ClassLoader originalClassLoader = testClass.getClassLoader();
+
+        if (ClasspathBatch.isEnabled() && isClassChild(extensionContext)) {
+            TestExecutionResult result =
+                    ClasspathBatch.execute(extensionContext, testMethod, methodLevel, originalClassLoader);
+            if (result != null) {
+                if (result.getStatus() != TestExecutionResult.Status.SUCCESSFUL
+                        && result.getThrowable().isPresent()) {
+                    throw result.getThrowable().get();
+                }
+                return;
+            }
+            // not selected by the test plan, run it on its own
+        }
+
+        ModifiedClassPathClassLoader customizedClassLoader;
+        boolean shareMethodLoaders = Config.getBoolean(ModifiedClassLoaderCache.SHARE_METHOD_LOADERS_PROPERTY, false);
+        if (methodLevel == null) {
+            customizedClassLoader =
+                    getClassLevelClassLoader(classContext(extensionContext), testClass, originalClassLoader);
+        } else if (shareMethodLoaders) {
+            // method-level loaders are shared by classpath only if enabled,
+            // because test methods of the same class would share static state
+            customizedClassLoader = builder(methodLevel, originalClassLoader).buildShared();
+        } else {
+            customizedClassLoader = buildModifiedClassLoader(methodLevel, originalClassLoader);
+        }
+
+        // restore the context class loader of this thread, whatever the test left on it
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(customizedClassLoader);
         try {
-            runTest(testClass.getName(), testMethod.getName(), customizedClassLoader);
+            runTest(extensionContext, testClass.getName(), testMethod.getName(), customizedClassLoader);
         } finally {
-            Thread.currentThread().setContextClassLoader(originalClassLoader);
+            thread.setContextClassLoader(contextClassLoader);
+            if (methodLevel != null) {
+                // closes the loader if it is not shared
+                ModifiedClassLoaderCache.release(customizedClassLoader);
+            }
         }
     }
 
-    private static ModifiedClassPathClassLoader getCachedClassLevelClassLoader(
+    /**
+     * Get the class-level loader, released when the test class is finished.
+     *
+     * @param classContext        context of the test class
+     * @param testClass           test class
+     * @param originalClassLoader class loader of the test class
+     * @return the class-level loader
+     */
+    static ModifiedClassPathClassLoader getClassLevelClassLoader(
+            ExtensionContext classContext, Class<?> testClass, ClassLoader originalClassLoader) {
+        // Class -> ClassLoader is cached until the test class is finished
+        ModifiedClassPathClassLoader classLoader = getCachedClassLevelClassLoader(testClass, originalClassLoader);
+        classContext
+                .getStore(NAMESPACE)
+                .getOrComputeIfAbsent(testClass, ClassLevelClassLoader::new, ClassLevelClassLoader.class);
+        return classLoader;
+    }
+
+    static ModifiedClassPathClassLoader getCachedClassLevelClassLoader(
             Class<?> testClass, ClassLoader originalClassLoader) {
         return ModifiedClassLoaderCache.getOrPut(testClass, () -> {
             Classpath cr = testClass.getAnnotation(Classpath.class);
-            return buildModifiedClassLoader(cr, originalClassLoader);
+            return builder(cr, originalClassLoader).buildShared();
         });
     }
 
     private static ModifiedClassPathClassLoader buildModifiedClassLoader(
             Classpath cr, ClassLoader originalClassLoader) {
+        return builder(cr, originalClassLoader).build();
+    }
+
+    static ModifiedClassPathClassLoaderBuilder builder(Classpath cr, ClassLoader originalClassLoader) {
         assert cr != null;
-        ModifiedClassPathClassLoaderBuilder generator = ModifiedClassPathClassLoader.builder(originalClassLoader)
+        return ModifiedClassPathClassLoader.builder(originalClassLoader)
                 .add(cr.add())
                 .exclude(cr.exclude())
+                .parentFirst(cr.parentFirst())
                 .classpathReplacer(cr);
-        return generator.build();
     }
 
-    private static void runTest(String testClassName, String testMethodName, ClassLoader custmizedClassLoader)
+    private static void runTest(
+            ExtensionContext extensionContext,
+            String testClassName,
+            String testMethodName,
+            ClassLoader custmizedClassLoader)
             throws Throwable {
-        Class<?> testClass = custmizedClassLoader.loadClass(testClassName);
-        Method testMethod = findMethod(testClass, testMethodName);
-        LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request()
-                .selectors(DiscoverySelectors.selectMethod(testClass, testMethod))
-                .build();
-        Launcher launcher = LauncherFactory.create();
-        TestPlan testPlan = launcher.discover(request);
+        DiscoverySelector selector;
+        if (isClassChild(extensionContext)) {
+            Class<?> testClass = custmizedClassLoader.loadClass(testClassName);
+            selector = DiscoverySelectors.selectMethod(testClass, findMethod(testClass, testMethodName));
+        } else {
+            // an invocation of a test template, select the invocation only
+            selector = DiscoverySelectors.selectUniqueId(NestedLauncher.uniqueId(extensionContext.getUniqueId()));
+        }
+        LauncherDiscoveryRequest request =
+                NestedLauncher.request().selectors(selector).build();
+        Launcher launcher = NestedLauncher.of(custmizedClassLoader);
+        // the launcher is shared, listeners are passed per execution
         SummaryGeneratingListener listener = new SummaryGeneratingListener();
-        launcher.registerTestExecutionListeners(listener);
-
-        launcher.execute(testPlan);
+        launcher.execute(request, listener);
         TestExecutionSummary summary = listener.getSummary();
+        if (summary.getTestsFoundCount() == 0) {
+            throw new IllegalStateException(
+                    "Test " + testClassName + "#" + testMethodName + " not found in the modified classpath");
+        }
         List<TestExecutionSummary.Failure> failures = summary.getFailures();
         if (failures != null && !failures.isEmpty()) {
             throw failures.get(0).getException();
@@ -151,9 +237,60 @@ public class ClasspathExtension implements InvocationInterceptor {
         invocation.skip();
     }
 
+    /**
+     * @return whether the test is a direct child of its class, not an invocation of a test template
+     */
+    private static boolean isClassChild(ExtensionContext extensionContext) {
+        return extensionContext
+                .getParent()
+                .map(ClasspathExtension::isClassContext)
+                .orElse(false);
+    }
+
+    /**
+     * Get the context of the test class, resources stored in it are closed when the test class is finished.
+     *
+     * <p> The parent of an invocation of a test template (e.g. {@code @ParameterizedTest}) is the template, which
+     * finishes before the other methods of the class.
+     *
+     * @param extensionContext context of a test method
+     * @return the nearest context without a test method
+     */
+    static ExtensionContext classContext(ExtensionContext extensionContext) {
+        ExtensionContext context = extensionContext;
+        while (!isClassContext(context) && context.getParent().isPresent()) {
+            context = context.getParent().get();
+        }
+        return context;
+    }
+
+    private static boolean isClassContext(ExtensionContext context) {
+        return !context.getTestMethod().isPresent();
+    }
+
     private static boolean isModifiedClassPathClassLoader(ExtensionContext extensionContext) {
         Class<?> testClass = extensionContext.getRequiredTestClass();
-        ClassLoader classLoader = testClass.getClassLoader();
-        return classLoader.getClass().getName().equals(ModifiedClassPathClassLoader.class.getName());
+        return isModifiedClassPathClassLoader(testClass.getClassLoader());
+    }
+
+    static boolean isModifiedClassPathClassLoader(ClassLoader classLoader) {
+        return classLoader != null
+                && classLoader.getClass().getName().equals(ModifiedClassPathClassLoader.class.getName());
+    }
+
+    /**
+     * Releases the class-level {@link ModifiedClassPathClassLoader} when the test class is finished.
+     */
+    private static final class ClassLevelClassLoader implements ExtensionContext.Store.CloseableResource {
+        private final Class<?> testClass;
+
+        ClassLevelClassLoader(Class<?> testClass) {
+            this.testClass = testClass;
+        }
+
+        @Override
+        public void close() {
+            ModifiedClassLoaderCache.release(testClass);
+        }
     }
 }
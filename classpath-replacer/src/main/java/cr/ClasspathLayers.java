@@ -0,0 +1,187 @@
+package cr;
+
+import cr.util.Config;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Split of a modified classpath into a base layer shared by all variants and a per-variant delta.
+ *
+ * <p> The base layer holds the entries of the original classpath that are kept as is and don't depend on any changed
+ * artifact, i.e. an artifact added, replaced or excluded by the {@link Classpath}. The delta holds everything else:
+ * the changed artifacts, the entries depending on them, and the entries without coordinates (e.g. project outputs,
+ * the test classes must be loaded by the variant).
+ *
+ * <p> The dependencies of the entries are only known from the {@link ClasspathMetadata} supplied by the build, without
+ * it the classpath is not layered. The base layer is the parent of the delta and can't see it, so an entry also stays
+ * in the delta if its classes reference, define or look up services of a package of the delta, see
+ * {@link ClasspathContents}. References by names computed at runtime are not detected.
+ *
+ * <p> Enabled by {@code -Dclasspath-replacer.loader.layered=true}.
+ *
+ * @author Freeman
+ */
+final class ClasspathLayers {
+
+    static final String LAYERED_PROPERTY = Config.PREFIX + "loader.layered";
+
+    final List<URL> base;
+    final List<URL> delta;
+
+    private ClasspathLayers(List<URL> base, List<URL> delta) {
+        this.base = Collections.unmodifiableList(base);
+        this.delta = Collections.unmodifiableList(delta);
+    }
+
+    static boolean isEnabled() {
+        return Config.getBoolean(LAYERED_PROPERTY, false);
+    }
+
+    /**
+     * Split the modified classpath.
+     *
+     * @param urls         modified classpath, in order
+     * @param originalUrls original classpath, in order
+     * @param metadata     nullable, metadata of the original classpath
+     * @return the layers, or null if the classpath can't be layered safely
+     */
+    static ClasspathLayers split(List<URL> urls, List<URL> originalUrls, ClasspathMetadata metadata) {
+        if (metadata == null) {
+            return null;
+        }
+        Set<String> original = toStrings(originalUrls);
+        Set<String> modified = toStrings(urls);
+
+        // groupId:artifactId of added and excluded entries
+        Set<String> changed = new HashSet<>();
+        for (URL url : urls) {
+            if (!original.contains(url.toString()) && !addGroupAndArtifact(changed, url, metadata)) {
+                return null;
+            }
+        }
+        for (URL url : originalUrls) {
+            if (!modified.contains(url.toString()) && !addGroupAndArtifact(changed, url, metadata)) {
+                return null;
+            }
+        }
+
+        List<URL> candidates = new ArrayList<>();
+        Set<String> delta = new HashSet<>();
+        for (URL url : urls) {
+            ClasspathMetadata.Entry entry = original.contains(url.toString()) ? metadata.get(url) : null;
+            if (entry != null && !dependsOn(metadata.closure(entry.coordinate()), changed)) {
+                candidates.add(url);
+            } else {
+                delta.add(url.toString());
+            }
+        }
+        moveDependents(candidates, delta, urls);
+
+        List<URL> base = new ArrayList<>();
+        List<URL> rest = new ArrayList<>();
+        for (URL url : urls) {
+            (delta.contains(url.toString()) ? rest : base).add(url);
+        }
+        return base.isEmpty() ? null : new ClasspathLayers(base, rest);
+    }
+
+    /**
+     * The base layer is the parent of the delta, its classes can't see the delta. Optional and reflective dependencies
+     * are not in the metadata, so move every candidate that may need the delta to it, until none does:
+     *
+     * <ul>
+     *     <li>it references a package of the delta, e.g. an auto-configuration with {@code @ConditionalOnClass}</li>
+     *     <li>it defines a package of the delta, it would shadow the classes of the delta</li>
+     *     <li>it defines a service interface implemented in the delta, its {@link java.util.ServiceLoader} lookups
+     *     wouldn't find them</li>
+     *     <li>it can't be scanned</li>
+     * </ul>
+     */
+    private static void moveDependents(List<URL> candidates, Set<String> delta, List<URL> urls) {
+        Set<String> packages = new HashSet<>();
+        Set<String> services = new HashSet<>();
+        for (URL url : urls) {
+            if (delta.contains(url.toString())) {
+                ClasspathContents contents = ClasspathContents.of(url);
+                if (contents != null) {
+                    packages.addAll(contents.packages);
+                    services.addAll(contents.services);
+                }
+            }
+        }
+        boolean moved = true;
+        while (moved) {
+            moved = false;
+            for (Iterator<URL> it = candidates.iterator(); it.hasNext(); ) {
+                URL url = it.next();
+                ClasspathContents contents = ClasspathContents.of(url);
+                if (contents == null
+                        || intersects(contents.references, packages)
+                        || intersects(contents.packages, packages)
+                        || intersects(contents.packages, services)) {
+                    it.remove();
+                    delta.add(url.toString());
+                    if (contents != null) {
+                        packages.addAll(contents.packages);
+                        services.addAll(contents.services);
+                    }
+                    moved = true;
+                }
+            }
+        }
+    }
+
+    private static boolean intersects(Set<String> a, Set<String> b) {
+        Set<String> smaller = a.size() <= b.size() ? a : b;
+        Set<String> larger = smaller == a ? b : a;
+        for (String value : smaller) {
+            if (larger.contains(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return false if the entry is a jar of unknown coordinates, nothing is known about its dependents
+     */
+    private static boolean addGroupAndArtifact(Set<String> changed, URL url, ClasspathMetadata metadata) {
+        ClasspathMetadata.Entry entry = metadata.get(url);
+        if (entry != null) {
+            changed.add(entry.groupAndArtifact());
+            return true;
+        }
+        ClasspathEntry classpathEntry = ClasspathEntry.of(url);
+        if (classpathEntry.groupAndArtifact() != null) {
+            changed.add(classpathEntry.groupAndArtifact());
+            return true;
+        }
+        // no jar depends on a directory
+        return classpathEntry.layout == ClasspathEntry.Layout.DIRECTORY;
+    }
+
+    private static boolean dependsOn(Set<String> closure, Set<String> changed) {
+        if (closure == null) {
+            return true;
+        }
+        for (String coordinate : closure) {
+            if (changed.contains(coordinate.substring(0, coordinate.lastIndexOf(':')))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> toStrings(List<URL> urls) {
+        Set<String> result = new HashSet<>();
+        for (URL url : urls) {
+            result.add(url.toString());
+        }
+        return result;
+    }
+}
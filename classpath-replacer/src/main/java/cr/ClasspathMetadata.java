@@ -0,0 +1,200 @@
+package cr;
+
+import cr.util.Config;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Exact coordinates of the classpath entries, supplied by the build (e.g. the classpath-replacer Gradle plugin).
+ *
+ * <p> Without metadata, the groupId, artifactId and version of a jar are guessed from the Maven/Gradle cache layout of
+ * its path. With metadata, they are looked up by path, entries not in the metadata (e.g. project outputs) still fall
+ * back to the path heuristics.
+ *
+ * <p> Metadata format, one classpath entry per line, dependencies are the direct dependencies of the entry in the
+ * resolved dependency graph of the build, joined by a space:
+ * <pre>{@code
+ * # classpath-replacer metadata v1
+ * /path/to/spring-boot-3.0.0.jar\torg.springframework.boot:spring-boot:3.0.0\torg.springframework:spring-core:6.0.2
+ * }</pre>
+ *
+ * @author Freeman
+ */
+final class ClasspathMetadata {
+
+    /**
+     * Path of the metadata file.
+     */
+    static final String METADATA_PROPERTY = Config.PREFIX + "metadata";
+
+    static final String HEADER = "# classpath-replacer metadata v1";
+
+    /**
+     * Absolute path -> entry.
+     */
+    private final Map<String, Entry> byPath;
+    /**
+     * groupId:artifactId:version -> entry.
+     */
+    private final Map<String, Entry> byCoordinate;
+
+    private final ConcurrentMap<String, Set<String>> closures = new ConcurrentHashMap<>();
+
+    ClasspathMetadata(List<Entry> entries) {
+        Map<String, Entry> paths = new HashMap<>();
+        Map<String, Entry> coordinates = new HashMap<>();
+        for (Entry entry : entries) {
+            paths.put(entry.path, entry);
+            coordinates.putIfAbsent(entry.coordinate(), entry);
+        }
+        this.byPath = paths;
+        this.byCoordinate = coordinates;
+    }
+
+    /**
+     * Get the metadata of {@code -Dclasspath-replacer.metadata}.
+     *
+     * @return the metadata, or null if no metadata is configured
+     */
+    static ClasspathMetadata getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Load the metadata file.
+     *
+     * @param file metadata file
+     * @return the metadata
+     * @throws UncheckedIOException if the file can't be read
+     * @throws IllegalArgumentException if the file is malformed
+     */
+    static ClasspathMetadata load(Path file) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read classpath metadata: " + file, e);
+        }
+        if (lines.isEmpty() || !HEADER.equals(lines.get(0))) {
+            throw new IllegalArgumentException("Unsupported classpath metadata: " + file);
+        }
+        List<Entry> entries = new ArrayList<>(lines.size());
+        for (int i = 1; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] columns = line.split("\t", -1);
+            String[] gav = columns.length >= 2 ? columns[1].split(":") : new String[0];
+            if (gav.length != 3) {
+                throw new IllegalArgumentException("Malformed classpath metadata " + file + " at line " + (i + 1));
+            }
+            List<String> dependencies = columns.length < 3 || columns[2].isEmpty()
+                    ? Collections.emptyList()
+                    : Arrays.asList(columns[2].split(" "));
+            entries.add(new Entry(new File(columns[0]).getAbsolutePath(), gav[0], gav[1], gav[2], dependencies));
+        }
+        return new ClasspathMetadata(entries);
+    }
+
+    /**
+     * @param url classpath entry
+     * @return the entry of the url, or null if the url is not in the metadata
+     */
+    Entry get(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return byPath.get(new File(url.toURI()).getAbsolutePath());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the coordinate and all its transitive dependencies in the dependency graph of the build.
+     *
+     * @param coordinate groupId:artifactId:version
+     * @return coordinates reachable from the given coordinate (inclusive), or null if the coordinate is not in the
+     * metadata
+     */
+    Set<String> closure(String coordinate) {
+        if (!byCoordinate.containsKey(coordinate)) {
+            return null;
+        }
+        return closures.computeIfAbsent(coordinate, this::computeClosure);
+    }
+
+    private Set<String> computeClosure(String coordinate) {
+        Set<String> result = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(coordinate);
+        while (!queue.isEmpty()) {
+            String current = queue.poll();
+            if (!result.add(current)) {
+                continue;
+            }
+            Entry entry = byCoordinate.get(current);
+            if (entry != null) {
+                queue.addAll(entry.dependencies);
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    static final class Entry {
+        final String path;
+        final String groupId;
+        final String artifactId;
+        final String version;
+        /**
+         * Direct dependencies, groupId:artifactId:version.
+         */
+        final List<String> dependencies;
+
+        Entry(String path, String groupId, String artifactId, String version, List<String> dependencies) {
+            this.path = path;
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.dependencies = dependencies;
+        }
+
+        String groupAndArtifact() {
+            return groupId + ":" + artifactId;
+        }
+
+        String coordinate() {
+            return groupId + ":" + artifactId + ":" + version;
+        }
+    }
+
+    private static final class Holder {
+        private static final ClasspathMetadata INSTANCE = fromConfig();
+
+        private static ClasspathMetadata fromConfig() {
+            String file = Config.get(METADATA_PROPERTY);
+            return file != null ? load(Paths.get(file)) : null;
+        }
+    }
+}
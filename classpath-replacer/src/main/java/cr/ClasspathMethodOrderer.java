@@ -0,0 +1,40 @@
+package cr;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.MethodDescriptor;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.MethodOrdererContext;
+
+/**
+ * {@link MethodOrderer} that keeps the test methods of the same classpath variant together, so the class loader of a
+ * variant is used by all its methods in a row while it's warm.
+ *
+ * <p> Methods using the class-level {@link Classpath} go first, then the methods of each method-level {@link Classpath}
+ * grouped in the order the variants first appear. Methods keep their relative order within a variant.
+ *
+ * <p> Use it by {@code @TestMethodOrder(ClasspathMethodOrderer.class)}, or for all test classes by the JUnit
+ * configuration parameter {@code junit.jupiter.testmethod.order.default=cr.ClasspathMethodOrderer}.
+ *
+ * @author Freeman
+ */
+public class ClasspathMethodOrderer implements MethodOrderer {
+
+    @Override
+    public void orderMethods(MethodOrdererContext context) {
+        Map<Optional<Classpath>, Integer> groups = new HashMap<>();
+        // class-level variant first
+        groups.put(Optional.empty(), 0);
+        for (MethodDescriptor method : context.getMethodDescriptors()) {
+            groups.putIfAbsent(variantOf(method), groups.size());
+        }
+        // List.sort is stable
+        context.getMethodDescriptors().sort(Comparator.comparingInt(method -> groups.get(variantOf(method))));
+    }
+
+    private static Optional<Classpath> variantOf(MethodDescriptor method) {
+        return method.findAnnotation(Classpath.class);
+    }
+}
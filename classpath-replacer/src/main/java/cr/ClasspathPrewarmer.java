@@ -0,0 +1,125 @@
+package cr;
+
+import cr.util.Config;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+
+/**
+ * Builds the class loaders of all {@link Classpath} tests in the background, once the test plan is discovered, so that
+ * tests don't wait for resolution and class loader creation when they are executed.
+ *
+ * <p> Shared loaders (class-level, and method-level if shared) are built and released right away, so they stay in the
+ * {@link ModifiedClassLoaderCache} without references: the test gets a cache hit, and a loader of a class that never
+ * runs (e.g. disabled) is evicted like any unused loader. Loaders that are not shared are built by each test, only
+ * their coordinates are resolved.
+ *
+ * <p> Registered automatically by {@code META-INF/services/org.junit.platform.launcher.TestExecutionListener},
+ * set {@code -Dclasspath-replacer.prewarm.enabled=false} to disable it.
+ *
+ * @author Freeman
+ */
+public class ClasspathPrewarmer implements TestExecutionListener {
+
+    static final String ENABLED_PROPERTY = Config.PREFIX + "prewarm.enabled";
+
+    @Override
+    public void testPlanExecutionStarted(TestPlan testPlan) {
+        // tests are executed in a nested launcher with the modified class loader, nothing to prewarm there
+        if (!Config.getBoolean(ENABLED_PROPERTY, true)
+                || ClasspathExtension.isModifiedClassPathClassLoader(ClasspathPrewarmer.class.getClassLoader())) {
+            return;
+        }
+        prewarm(testPlan, Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Prewarm all {@link Classpath} variants of the test plan, in the order of the test plan.
+     *
+     * @param testPlan    test plan
+     * @param classLoader class loader the tests are executed with
+     * @return future completes when all variants are prewarmed
+     */
+    static CompletableFuture<Void> prewarm(TestPlan testPlan, ClassLoader classLoader) {
+        // variant -> whether its loader is shared, equal annotations are prewarmed once
+        Map<Classpath, Boolean> variants = new LinkedHashMap<>();
+        boolean shareMethodLoaders = Config.getBoolean(ModifiedClassLoaderCache.SHARE_METHOD_LOADERS_PROPERTY, false);
+        for (TestIdentifier root : testPlan.getRoots()) {
+            for (TestIdentifier identifier : testPlan.getDescendants(root)) {
+                Optional<TestSource> source = identifier.getSource();
+                if (!source.isPresent() || !(source.get() instanceof MethodSource)) {
+                    continue;
+                }
+                collect((MethodSource) source.get(), shareMethodLoaders, variants);
+            }
+        }
+        if (variants.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<Runnable> tasks = new ArrayList<>();
+        for (Map.Entry<Classpath, Boolean> variant : variants.entrySet()) {
+            if (variant.getValue()) {
+                tasks.add(
+                        () -> ModifiedClassLoaderCache.release(ClasspathExtension.builder(variant.getKey(), classLoader)
+                                .buildShared()));
+            } else {
+                tasks.add(() -> ClasspathExtension.builder(variant.getKey(), classLoader)
+                        .prefetch());
+            }
+        }
+
+        // resolution of each variant is already parallel, one thread is enough
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "classpath-replacer-prewarm");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            return CompletableFuture.runAsync(
+                    () -> {
+                        for (Runnable task : tasks) {
+                            try {
+                                task.run();
+                            } catch (RuntimeException ignored) {
+                                // the test will build again and report the failure
+                            }
+                        }
+                    },
+                    executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void collect(MethodSource source, boolean shareMethodLoaders, Map<Classpath, Boolean> variants) {
+        Class<?> testClass;
+        Method testMethod;
+        try {
+            testClass = source.getJavaClass();
+            testMethod = source.getJavaMethod();
+        } catch (RuntimeException ignored) {
+            return;
+        }
+        Classpath methodLevel = testMethod.getAnnotation(Classpath.class);
+        if (methodLevel != null) {
+            variants.merge(methodLevel, shareMethodLoaders, Boolean::logicalOr);
+            return;
+        }
+        Classpath classLevel = testClass.getAnnotation(Classpath.class);
+        if (classLevel != null) {
+            variants.put(classLevel, true);
+        }
+    }
+}
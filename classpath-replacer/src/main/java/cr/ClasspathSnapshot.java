@@ -0,0 +1,140 @@
+package cr;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable snapshot of the classpath of a class loader, built once per class loader and shared by all
+ * {@link ModifiedClassPathClassLoaderBuilder}s.
+ *
+ * <p> The classpath comes from {@link URLClassLoader#getURLs()}, or {@code java.class.path} for the application
+ * class loader of JDK 9+.
+ *
+ * <p> Manifest-only pathing jars are replaced by the entries of their {@code Class-Path}, e.g. the {@code classpath.jar}
+ * of IntelliJ IDEA, the {@code surefirebooter.jar} of Maven Surefire and the pathing jars used to shorten long command
+ * lines. A candidate (by file name) is only unwrapped when it contains nothing but its manifest.
+ *
+ * @author Freeman
+ */
+final class ClasspathSnapshot {
+
+    private static final Pattern PATHING_JAR_PATTERN =
+            Pattern.compile(".*/(classpath\\d*|surefirebooter[^/]*|[^/]*pathing[^/]*)\\.jar");
+
+    private static final Map<ClassLoader, ClasspathSnapshot> snapshots =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final List<URL> urls;
+
+    private ClasspathSnapshot(List<URL> urls) {
+        this.urls = Collections.unmodifiableList(urls);
+    }
+
+    /**
+     * Get the snapshot of the class loader, built on first access.
+     *
+     * @param classLoader class loader
+     * @return the snapshot
+     */
+    static ClasspathSnapshot of(ClassLoader classLoader) {
+        return snapshots.computeIfAbsent(classLoader, ClasspathSnapshot::create);
+    }
+
+    /**
+     * @return classpath entries in order, pathing jars are expanded
+     */
+    List<URL> urls() {
+        return urls;
+    }
+
+    static ClasspathSnapshot create(ClassLoader classLoader) {
+        List<URL> result = new ArrayList<>();
+        for (URL url : rawUrls(classLoader)) {
+            List<URL> entries = pathingJarEntries(url);
+            if (entries != null) {
+                result.addAll(entries);
+            } else {
+                result.add(url);
+            }
+        }
+        return new ClasspathSnapshot(result);
+    }
+
+    private static List<URL> rawUrls(ClassLoader classLoader) {
+        if (classLoader instanceof URLClassLoader) {
+            List<URL> urls = new ArrayList<>();
+            Collections.addAll(urls, ((URLClassLoader) classLoader).getURLs());
+            return urls;
+        }
+        List<URL> urls = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+            if (!entry.isEmpty()) {
+                urls.add(toURL(entry));
+            }
+        }
+        return urls;
+    }
+
+    private static URL toURL(String entry) {
+        try {
+            return new File(entry).toURI().toURL();
+        } catch (MalformedURLException ex) {
+            throw new IllegalArgumentException(ex);
+        }
+    }
+
+    /**
+     * @param url classpath entry
+     * @return entries of the {@code Class-Path} manifest attribute, or null if the url is not a pathing jar
+     */
+    static List<URL> pathingJarEntries(URL url) {
+        if (!"file".equals(url.getProtocol())
+                || !PATHING_JAR_PATTERN.matcher(url.getPath()).matches()) {
+            return null;
+        }
+        try (JarFile jarFile = new JarFile(new File(url.toURI()))) {
+            Manifest manifest = jarFile.getManifest();
+            String classPath =
+                    manifest != null ? manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH) : null;
+            if (classPath == null || !isManifestOnly(jarFile)) {
+                return null;
+            }
+            List<URL> entries = new ArrayList<>();
+            for (String entry : classPath.trim().split("\\s+")) {
+                if (!entry.isEmpty()) {
+                    // entries are URLs relative to the pathing jar, absolute URLs are used as is
+                    entries.add(new URL(url, entry));
+                }
+            }
+            return entries;
+        } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean isManifestOnly(JarFile jarFile) {
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            if (!entry.isDirectory() && !entry.getName().equals(JarFile.MANIFEST_NAME)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,161 @@
+package cr;
+
+import cr.packager.Packager;
+import cr.packager.PackagerHolder;
+import cr.util.Config;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decides where a {@link ModifiedClassPathClassLoader} loads a class from, by class name prefix.
+ *
+ * <ul>
+ *     <li>{@link Decision#PARENT_FIRST}: loaded by the application class loader, so the test framework (see
+ *     {@link Packager}) and the classes shared with the test runner are the same classes in and out of the modified
+ *     classpath</li>
+ *     <li>{@link Decision#CHILD_FIRST}: loaded from the modified classpath, the default, used to carve exceptions out of
+ *     a parent-first prefix</li>
+ *     <li>{@link Decision#HIDDEN}: never loaded, as if it's not on the classpath</li>
+ * </ul>
+ *
+ * <p> The longest matching prefix wins. Besides the packages of the {@link Packager}s, rules are configured by
+ * {@code -Dclasspath-replacer.delegation.parent-first}, {@code -Dclasspath-replacer.delegation.child-first} and
+ * {@code -Dclasspath-replacer.delegation.hidden}, comma separated prefixes, and by {@link Classpath#parentFirst()}.
+ *
+ * <p> Rules of the {@link Packager}s and the system properties are read once per JVM, only {@link Classpath#parentFirst()}
+ * is merged per loader. Rules are compiled once into a prefix trie, policies of the same rules are shared by all
+ * loaders. A decision walks the trie at most the length of the class name, so decisions are not cached.
+ *
+ * @author Freeman
+ */
+final class DelegationPolicy {
+
+    static final String PARENT_FIRST_PROPERTY = Config.PREFIX + "delegation.parent-first";
+    static final String CHILD_FIRST_PROPERTY = Config.PREFIX + "delegation.child-first";
+    static final String HIDDEN_PROPERTY = Config.PREFIX + "delegation.hidden";
+
+    private static final ConcurrentMap<Map<String, Decision>, DelegationPolicy> policies = new ConcurrentHashMap<>();
+
+    enum Decision {
+        PARENT_FIRST,
+        CHILD_FIRST,
+        HIDDEN
+    }
+
+    /**
+     * Prefix -> decision.
+     */
+    private final Map<String, Decision> rules;
+
+    private final Node root = new Node();
+
+    private DelegationPolicy(Map<String, Decision> rules) {
+        this.rules = rules;
+        for (Map.Entry<String, Decision> rule : rules.entrySet()) {
+            Node node = root;
+            for (int i = 0; i < rule.getKey().length(); i++) {
+                node = node.children.computeIfAbsent(rule.getKey().charAt(i), c -> new Node());
+            }
+            node.decision = rule.getValue();
+        }
+    }
+
+    /**
+     * Get the policy of the default rules.
+     *
+     * @return the shared policy
+     */
+    static DelegationPolicy defaults() {
+        return of(new String[0]);
+    }
+
+    /**
+     * Get the policy of the default rules plus extra parent-first prefixes.
+     *
+     * @param parentFirst extra parent-first prefixes, e.g. {@link Classpath#parentFirst()}
+     * @return the shared policy of the rules
+     */
+    static DelegationPolicy of(String[] parentFirst) {
+        return of(Defaults.INSTANCE, parentFirst);
+    }
+
+    static DelegationPolicy of(Defaults defaults, String[] parentFirst) {
+        Map<String, Decision> rules = new LinkedHashMap<>(defaults.parentFirst);
+        put(rules, parentFirst, Decision.PARENT_FIRST);
+        // child-first and hidden prefixes win over the same parent-first prefixes
+        rules.putAll(defaults.overrides);
+        Map<String, Decision> key = Collections.unmodifiableMap(rules);
+        return policies.computeIfAbsent(key, DelegationPolicy::new);
+    }
+
+    /**
+     * @param className binary class name
+     * @return where to load the class from
+     */
+    Decision decide(String className) {
+        Decision result = Decision.CHILD_FIRST;
+        Node node = root;
+        for (int i = 0; i < className.length() && node != null; i++) {
+            node = node.children.get(className.charAt(i));
+            if (node != null && node.decision != null) {
+                result = node.decision;
+            }
+        }
+        return result;
+    }
+
+    private static void put(Map<String, Decision> rules, String[] prefixes, Decision decision) {
+        for (String prefix : prefixes) {
+            String trimmed = prefix.trim();
+            if (!trimmed.isEmpty()) {
+                rules.put(trimmed, decision);
+            }
+        }
+    }
+
+    private static String[] split(String value) {
+        return value != null ? value.split(",") : new String[0];
+    }
+
+    @Override
+    public String toString() {
+        return "DelegationPolicy" + rules;
+    }
+
+    /**
+     * Rules of the {@link Packager}s and the system properties.
+     */
+    static final class Defaults {
+        private static final Defaults INSTANCE = load();
+
+        private final Map<String, Decision> parentFirst = new LinkedHashMap<>();
+        private final Map<String, Decision> overrides = new LinkedHashMap<>();
+
+        private Defaults() {}
+
+        /**
+         * Read the rules, {@link #of(String[])} uses the rules read at first use.
+         *
+         * @return the rules
+         */
+        static Defaults load() {
+            Defaults defaults = new Defaults();
+            for (Packager packager : PackagerHolder.getPackagers()) {
+                put(defaults.parentFirst, packager.internalPackages(), Decision.PARENT_FIRST);
+            }
+            put(defaults.parentFirst, split(Config.get(PARENT_FIRST_PROPERTY)), Decision.PARENT_FIRST);
+            put(defaults.overrides, split(Config.get(CHILD_FIRST_PROPERTY)), Decision.CHILD_FIRST);
+            put(defaults.overrides, split(Config.get(HIDDEN_PROPERTY)), Decision.HIDDEN);
+            return defaults;
+        }
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private Decision decision;
+    }
+}
@@ -0,0 +1,414 @@
+package cr;
+
+import cr.action.Exclude;
+import cr.util.Const;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An {@link Exclude} compiled against a classpath, applied to the classpath in one pass.
+ *
+ * <p> Each classpath url is parsed once into a {@link ClasspathEntry}, the coordinates from the
+ * {@link ClasspathMetadata} take precedence. Patterns are classified and indexed once: jar file names into a hash set,
+ * wildcards into precompiled {@link Pattern}s, coordinates into hash sets, and the versions on the classpath into an
+ * index keyed by groupId:artifactId.
+ *
+ * <p> Entries with known coordinates are matched exactly, only entries with unknown coordinates fall back to guessing
+ * the groupId from the jar path.
+ *
+ * @author Freeman
+ */
+final class ExcludePlan {
+
+    private static final Pattern COORDINATE_WITH_VERSION_PATTERN =
+            Pattern.compile(Const.MAVEN_COORDINATE_WITH_VERSION_PATTERN);
+    private static final Pattern COORDINATE_PATTERN = Pattern.compile(Const.MAVEN_COORDINATE_PATTERN);
+    private static final Pattern VERSION_PATTERN = Pattern.compile(Const.VERSION_PATTERN);
+
+    /**
+     * Nullable.
+     */
+    private final ClasspathMetadata metadata;
+
+    private final List<Item> classpath;
+
+    /**
+     * groupId:artifactId -> versions on the classpath, only entries with known coordinates.
+     */
+    private final Map<String, List<String>> index = new HashMap<>();
+
+    /**
+     * Exact jar file names, like {@code gson-2.8.9.jar}.
+     */
+    private final Set<String> fileNames = new HashSet<>();
+
+    private final List<Pattern> wildcards = new ArrayList<>();
+
+    /**
+     * Coordinates with version, like {@code com.google.code.gson:gson:2.8.9}.
+     */
+    private final Set<String> coordinates = new HashSet<>();
+
+    /**
+     * Coordinates without version, like {@code com.google.code.gson:gson}.
+     */
+    private final Set<String> groupAndArtifacts = new HashSet<>();
+
+    /**
+     * Transitive closure of coordinates whose dependencies are known from the {@link ClasspathMetadata}.
+     */
+    private final Set<String> closure = new HashSet<>();
+
+    /**
+     * Coordinates to exclude transitively, which must be resolved to compare the jars.
+     */
+    private final List<String> resolved = new ArrayList<>();
+
+    /**
+     * Coordinates to exclude transitively, which only need resolution for jars not in the {@link ClasspathMetadata}.
+     */
+    private final List<String> resolvedIfUnknown = new ArrayList<>();
+
+    private ResolvedJars resolvedJars;
+    private ResolvedJars resolvedIfUnknownJars;
+
+    private ExcludePlan(List<URL> urls, ClasspathMetadata metadata) {
+        this.metadata = metadata;
+        this.classpath = new ArrayList<>(urls.size());
+        for (URL url : urls) {
+            Item item = new Item(url, metadata);
+            classpath.add(item);
+            if (item.coordinate != null) {
+                index.computeIfAbsent(item.groupAndArtifact, k -> new ArrayList<>())
+                        .add(item.version);
+            }
+        }
+    }
+
+    /**
+     * Compile the {@link Exclude} against the classpath.
+     *
+     * @param exclude           exclude action
+     * @param excludeTransitive whether to exclude the transitive dependencies of coordinates
+     * @param urls              classpath to apply the plan to
+     * @param metadata          nullable, exact coordinates of the classpath entries
+     * @return the plan
+     * @throws IllegalArgumentException if a pattern is illegal
+     */
+    static ExcludePlan compile(Exclude exclude, boolean excludeTransitive, List<URL> urls, ClasspathMetadata metadata) {
+        ExcludePlan plan = new ExcludePlan(urls, metadata);
+        for (String pattern : exclude.patterns()) {
+            if (COORDINATE_WITH_VERSION_PATTERN.matcher(pattern).matches()) {
+                if (excludeTransitive) {
+                    plan.addTransitive(pattern);
+                } else {
+                    plan.coordinates.add(pattern);
+                }
+            } else if (COORDINATE_PATTERN.matcher(pattern).matches()) {
+                if (excludeTransitive) {
+                    for (String version : plan.findVersions(pattern)) {
+                        plan.addTransitive(pattern + ":" + version);
+                    }
+                } else {
+                    plan.groupAndArtifacts.add(pattern);
+                }
+            } else if (pattern.contains("*")) {
+                plan.wildcards.add(Pattern.compile(pattern.replace(".", "\\.").replace("*", ".*")));
+            } else if (pattern.endsWith(".jar")) {
+                plan.fileNames.add(pattern);
+            } else {
+                throw new IllegalArgumentException(
+                        String.format(Const.EXCLUDE_ILLEGAL_PATTERN_MESSAGE_FORMAT, pattern));
+            }
+        }
+        return plan;
+    }
+
+    private void addTransitive(String coordinate) {
+        Set<String> dependencies = metadata != null ? metadata.closure(coordinate) : null;
+        if (dependencies != null) {
+            closure.addAll(dependencies);
+            resolvedIfUnknown.add(coordinate);
+        } else {
+            resolved.add(coordinate);
+        }
+    }
+
+    /**
+     * Coordinates that must be resolved to apply the plan, can be resolved ahead of time.
+     */
+    List<String> coordinatesToResolve() {
+        return Collections.unmodifiableList(resolved);
+    }
+
+    /**
+     * Apply the plan to the classpath it was compiled against.
+     *
+     * @return a new classpath without the excluded entries
+     */
+    List<URL> apply() {
+        List<URL> result = new ArrayList<>(classpath.size());
+        for (Item item : classpath) {
+            if (!matches(item)) {
+                result.add(item.url);
+            }
+        }
+        return result;
+    }
+
+    private boolean matches(Item item) {
+        String fileName = item.entry.fileName;
+        if (fileName != null) {
+            if (fileNames.contains(fileName)) {
+                return true;
+            }
+            for (Pattern wildcard : wildcards) {
+                if (wildcard.matcher(fileName).matches()) {
+                    return true;
+                }
+            }
+        }
+
+        if (item.coordinate != null) {
+            if (coordinates.contains(item.coordinate)
+                    || groupAndArtifacts.contains(item.groupAndArtifact)
+                    || closure.contains(item.coordinate)) {
+                return true;
+            }
+        } else if (fileName != null && (matchesCoordinate(item) || matchesGroupAndArtifact(item))) {
+            return true;
+        }
+
+        if (!resolved.isEmpty()) {
+            if (resolvedJars == null) {
+                resolvedJars = new ResolvedJars(resolved);
+            }
+            if (resolvedJars.contains(item)) {
+                return true;
+            }
+        }
+        if (!item.inMetadata && !resolvedIfUnknown.isEmpty()) {
+            if (resolvedIfUnknownJars == null) {
+                resolvedIfUnknownJars = new ResolvedJars(resolvedIfUnknown);
+            }
+            return resolvedIfUnknownJars.contains(item);
+        }
+        return false;
+    }
+
+    /**
+     * Unknown coordinates, match the jar name and guess the groupId from the path.
+     */
+    private boolean matchesCoordinate(Item item) {
+        for (String coordinate : coordinates) {
+            String[] gav = coordinate.split(":");
+            if (item.entry.fileName.equals(gav[1] + "-" + gav[2] + ".jar")
+                    && isSameGroupIdWithExactMatch(item.url, gav[0].split("\\."))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Unknown coordinates, match the jar name and guess the groupId from the path.
+     */
+    private boolean matchesGroupAndArtifact(Item item) {
+        String fileName = item.entry.fileName;
+        for (String groupAndArtifact : groupAndArtifacts) {
+            String[] ga = groupAndArtifact.split(":");
+            String prefix = ga[1] + "-";
+            if (fileName.startsWith(prefix)
+                    && fileName.endsWith(".jar")
+                    && fileName.length() > prefix.length() + ".jar".length()
+                    && VERSION_PATTERN
+                            .matcher(fileName.substring(prefix.length(), fileName.length() - ".jar".length()))
+                            .matches()
+                    && isSameGroupIdWithExactMatch(item.url, ga[0].split("\\."))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<String> findVersions(String groupAndArtifact) {
+        List<String> versions = new ArrayList<>(index.getOrDefault(groupAndArtifact, Collections.emptyList()));
+        String[] ga = groupAndArtifact.split(":");
+        String[] groupId = ga[0].split("\\.");
+        Pattern pattern = Pattern.compile(Pattern.quote(ga[1]) + "-(.*)\\.jar");
+        for (Item item : classpath) {
+            // unknown coordinates, guess from the jar name and path
+            if (item.coordinate != null || item.entry.fileName == null) {
+                continue;
+            }
+            Matcher matcher = pattern.matcher(item.entry.fileName);
+            if (matcher.find()
+                    && VERSION_PATTERN.matcher(matcher.group(1)).matches()
+                    && isSameGroupIdWithExactMatch(item.url, groupId)) {
+                versions.add(matcher.group(1));
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Only take the last 2 elements of the group id array to compare.
+     *
+     * @param url        jar url
+     * @param groupIdArr maven group id array, e.g. [com, google, code, gson]
+     * @return true if the group id is same
+     */
+    private static boolean isSameGroupIdWithFuzzyMatch(URL url, String[] groupIdArr) {
+        String urlStr = url.toString();
+
+        // gradle project, jar cache path is like
+        // ~/.gradle/caches/modules-2/files-2.1/com.google.code.gson/gson/2.8.6/3f7e1e9e8e1b0e1e8e1b0e1b0e1b0e1b0e1b0e1b/gson-2.8.6.jar
+        String gradlePartGroupId = groupIdArr[groupIdArr.length - 2] + "." + groupIdArr[groupIdArr.length - 1] + "/";
+        if (urlStr.contains(gradlePartGroupId)) {
+            return true;
+        }
+
+        // maven project, jar cache path is like ~/.m2/repository/com/google/code/gson/gson/2.8.6/gson-2.8.6.jar
+        String mavenPartGroupId =
+                "/" + groupIdArr[groupIdArr.length - 2] + "/" + groupIdArr[groupIdArr.length - 1] + "/";
+        if (urlStr.contains(mavenPartGroupId)) {
+            return true;
+        }
+
+        // artifact id is the same, but group id is different
+        return false;
+    }
+
+    /**
+     * Url must contain all the elements in groupIdArr.
+     *
+     * @param url        jar url
+     * @param groupIdArr maven group id array, e.g. [com, google, code, gson]
+     * @return true if the group id is same
+     */
+    private static boolean isSameGroupIdWithExactMatch(URL url, String[] groupIdArr) {
+        String urlStr = url.toString();
+
+        // gradle project, jar cache path is like
+        // ~/.gradle/caches/modules-2/files-2.1/com.google.code.gson/gson/2.8.6/3f7e1e9e8e1b0e1e8e1b0e1b0e1b0e1b0e1b0e1b/gson-2.8.6.jar
+        String gradlePartGroupId = "/" + String.join(".", groupIdArr) + "/";
+        if (urlStr.contains(gradlePartGroupId)) {
+            return true;
+        }
+
+        // maven project, jar cache path is like ~/.m2/repository/com/google/code/gson/gson/2.8.6/gson-2.8.6.jar
+        String mavenPartGroupId = "/" + String.join("/", groupIdArr) + "/";
+        if (urlStr.contains(mavenPartGroupId)) {
+            return true;
+        }
+
+        // artifact id is the same, but group id is different
+        return false;
+    }
+
+    /**
+     * A classpath entry with its coordinates, from the {@link ClasspathMetadata} if present.
+     */
+    private static final class Item {
+        final URL url;
+        final ClasspathEntry entry;
+        final boolean inMetadata;
+        /**
+         * Nullable, null if the coordinates are unknown.
+         */
+        final String coordinate;
+
+        final String groupAndArtifact;
+        final String version;
+
+        Item(URL url, ClasspathMetadata metadata) {
+            this.url = url;
+            this.entry = ClasspathEntry.of(url);
+            ClasspathMetadata.Entry known = metadata != null ? metadata.get(url) : null;
+            this.inMetadata = known != null;
+            if (known != null) {
+                this.coordinate = known.coordinate();
+                this.groupAndArtifact = known.groupAndArtifact();
+                this.version = known.version;
+            } else {
+                this.coordinate = entry.coordinate();
+                this.groupAndArtifact = entry.groupAndArtifact();
+                this.version = entry.version;
+            }
+        }
+    }
+
+    /**
+     * Jars of resolved coordinates, compared by coordinates, and by jar name and path when the coordinates of either
+     * side are unknown.
+     */
+    private static final class ResolvedJars {
+        private final Set<String> urls = new HashSet<>();
+        private final Set<String> coordinates = new HashSet<>();
+        /**
+         * Jar file name -> path segments before the artifact id, like {@code [..., com, google, code, gson]}, of jars
+         * with unknown coordinates.
+         */
+        private final Map<String, List<String[]>> unknown = new HashMap<>();
+        /**
+         * Jar file name -> path segments before the artifact id, of all jars.
+         */
+        private final Map<String, List<String[]>> all = new HashMap<>();
+
+        ResolvedJars(List<String> coordinatesToResolve) {
+            // resolution is memoized by MavenUtils
+            for (String coordinate : coordinatesToResolve) {
+                for (URL jar : MavenUtils.resolveCoordinate(coordinate)) {
+                    urls.add(jar.toString());
+                    ClasspathEntry entry = ClasspathEntry.of(jar);
+                    if (entry.fileName == null) {
+                        continue;
+                    }
+                    // remove the last 3 '/' for maven jar path
+                    String jarStr = jar.toString();
+                    String temp = jarStr.substring(0, jarStr.lastIndexOf("/"));
+                    temp = temp.substring(0, temp.lastIndexOf("/"));
+                    String[] groupIdArr =
+                            temp.substring(0, temp.lastIndexOf("/")).split("/");
+                    all.computeIfAbsent(entry.fileName, k -> new ArrayList<>()).add(groupIdArr);
+                    if (entry.coordinate() != null) {
+                        coordinates.add(entry.coordinate());
+                    } else {
+                        unknown.computeIfAbsent(entry.fileName, k -> new ArrayList<>())
+                                .add(groupIdArr);
+                    }
+                }
+            }
+        }
+
+        boolean contains(Item item) {
+            if (urls.contains(item.url.toString())) {
+                return true;
+            }
+            if (item.coordinate != null && coordinates.contains(item.coordinate)) {
+                return true;
+            }
+            if (item.entry.fileName == null) {
+                return false;
+            }
+            List<String[]> candidates = (item.coordinate != null ? unknown : all).get(item.entry.fileName);
+            if (candidates == null) {
+                return false;
+            }
+            for (String[] groupIdArr : candidates) {
+                if (isSameGroupIdWithFuzzyMatch(item.url, groupIdArr)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
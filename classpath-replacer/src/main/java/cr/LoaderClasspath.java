@@ -0,0 +1,445 @@
+package cr;
+
+import cr.util.Config;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.security.CodeSigner;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.Manifest;
+
+/**
+ * Classpath of a {@link ModifiedClassPathClassLoader}, looks up classes and resources in the jars shared by
+ * {@link SharedJarFiles} and in directories, in classpath order.
+ *
+ * <p> Like {@code URLClassPath}, entries of the {@code Class-Path} manifest attribute of a jar are searched right after
+ * the jar, and entries that don't exist are ignored. Jars are opened on first lookup.
+ *
+ * <p> Lookups don't scan the whole classpath: on first lookup, the jars are indexed by the directories (packages) they
+ * contain, so a lookup only probes the jars containing its package. Misses in jars are remembered, so probing for an
+ * absent class again (e.g. {@code Class.forName("com.google.gson.Gson")}) is a hash lookup. Directories may change
+ * while the loader is used (e.g. classes or resources generated by a test), they are not indexed and are probed on
+ * every lookup, like {@link java.net.URLClassLoader} does.
+ *
+ * <p> Enabled by default, set {@code -Dclasspath-replacer.loader.shared-jars=false} to let each loader open its own
+ * jars.
+ *
+ * @author Freeman
+ */
+final class LoaderClasspath {
+
+    static final String SHARED_JARS_PROPERTY = Config.PREFIX + "loader.shared-jars";
+
+    private static final Source[] NO_SOURCES = new Source[0];
+
+    private final List<URL> urls;
+
+    /**
+     * Guarded by this, null until first lookup, empty once closed.
+     */
+    private volatile List<Source> sources;
+
+    /**
+     * Package -> jars containing it and all directories, in classpath order, written once with {@link #sources}.
+     */
+    private volatile Map<String, Source[]> index = Collections.emptyMap();
+
+    /**
+     * All directories, in classpath order, candidates of packages not found in any jar.
+     */
+    private volatile Source[] directories = NO_SOURCES;
+
+    /**
+     * Paths not found in any jar, without any directory to probe.
+     */
+    private final Set<String> misses = ConcurrentHashMap.newKeySet();
+
+    private boolean closed;
+
+    private LoaderClasspath(List<URL> urls) {
+        this.urls = urls;
+    }
+
+    /**
+     * @param urls classpath
+     * @return classpath of the urls, or null if shared jars are disabled or any url is not a file
+     */
+    static LoaderClasspath of(URL[] urls) {
+        if (!Config.getBoolean(SHARED_JARS_PROPERTY, true)) {
+            return null;
+        }
+        for (URL url : urls) {
+            if (!"file".equals(url.getProtocol())) {
+                return null;
+            }
+        }
+        List<URL> list = new ArrayList<>();
+        Collections.addAll(list, urls);
+        return new LoaderClasspath(list);
+    }
+
+    /**
+     * @param path resource path, like {@code com/google/gson/Gson.class}
+     * @return the first resource of the path, or null if not found
+     */
+    Resource find(String path) {
+        if (!isValid(path) || misses.contains(path)) {
+            return null;
+        }
+        Source[] candidates = candidates(path);
+        for (Source source : candidates) {
+            Resource resource = source.find(path);
+            if (resource != null) {
+                return resource;
+            }
+        }
+        if (!containsDirectory(candidates)) {
+            // jars don't change
+            misses.add(path);
+        }
+        return null;
+    }
+
+    /**
+     * @param path resource path
+     * @return urls of all resources of the path, in classpath order
+     */
+    List<URL> findAll(String path) {
+        if (!isValid(path)) {
+            return Collections.emptyList();
+        }
+        List<URL> result = new ArrayList<>();
+        for (Source source : candidates(path)) {
+            Resource resource = source.find(path);
+            if (resource != null) {
+                result.add(resource.url);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Release the shared jars.
+     */
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        List<Source> opened = sources;
+        sources = Collections.emptyList();
+        index = Collections.emptyMap();
+        directories = NO_SOURCES;
+        if (opened != null) {
+            for (Source source : opened) {
+                source.close();
+            }
+        }
+    }
+
+    private Source[] candidates(String path) {
+        if (sources == null) {
+            synchronized (this) {
+                if (sources == null) {
+                    List<Source> opened = open();
+                    index(opened);
+                    sources = opened;
+                }
+            }
+        }
+        Source[] result = index.get(SharedJarFiles.packageOf(path));
+        return result != null ? result : directories;
+    }
+
+    private void index(List<Source> sources) {
+        Map<String, List<Source>> index = new HashMap<>();
+        List<Source> directories = new ArrayList<>();
+        for (Source source : sources) {
+            if (source instanceof DirectorySource) {
+                // may contain any package
+                directories.add(source);
+                for (List<Source> candidates : index.values()) {
+                    candidates.add(source);
+                }
+                continue;
+            }
+            for (String pkg : source.packages()) {
+                index.computeIfAbsent(pkg, k -> new ArrayList<>(directories)).add(source);
+            }
+        }
+        Map<String, Source[]> result = new HashMap<>(index.size() * 4 / 3 + 1);
+        for (Map.Entry<String, List<Source>> entry : index.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toArray(NO_SOURCES));
+        }
+        this.index = result;
+        this.directories = directories.toArray(NO_SOURCES);
+    }
+
+    private static boolean containsDirectory(Source[] sources) {
+        for (Source source : sources) {
+            if (source instanceof DirectorySource) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<Source> open() {
+        List<Source> result = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (URL url : urls) {
+            open(url, result, seen);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private static void open(URL url, List<Source> result, Set<String> seen) {
+        if (!seen.add(url.toString()) || !"file".equals(url.getProtocol())) {
+            return;
+        }
+        File file;
+        try {
+            file = new File(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return;
+        }
+        if (file.isDirectory()) {
+            result.add(new DirectorySource(url, file));
+            return;
+        }
+        if (!file.isFile()) {
+            return;
+        }
+        SharedJarFiles.Jar jar;
+        try {
+            jar = SharedJarFiles.acquire(file);
+        } catch (IOException e) {
+            // not a jar, ignored like URLClassPath does
+            return;
+        }
+        JarSource source;
+        try {
+            source = new JarSource(url, jar);
+        } catch (MalformedURLException e) {
+            jar.release();
+            return;
+        }
+        result.add(source);
+        String classPath =
+                jar.manifest != null ? jar.manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH) : null;
+        if (classPath != null) {
+            for (String entry : classPath.trim().split("\\s+")) {
+                if (entry.isEmpty()) {
+                    continue;
+                }
+                try {
+                    open(new URL(url, entry), result, seen);
+                } catch (MalformedURLException ignored) {
+                    // ignored like URLClassPath does
+                }
+            }
+        }
+    }
+
+    /**
+     * Resource names escaping the classpath entry are never found.
+     */
+    private static boolean isValid(String path) {
+        return !path.startsWith("/")
+                && !path.equals("..")
+                && !path.startsWith("../")
+                && !path.endsWith("/..")
+                && !path.contains("/../");
+    }
+
+    /**
+     * A found class or resource.
+     */
+    abstract static class Resource {
+        /**
+         * Url of the classpath entry.
+         */
+        final URL codeSourceUrl;
+        /**
+         * Url of the resource.
+         */
+        final URL url;
+
+        Resource(URL codeSourceUrl, URL url) {
+            this.codeSourceUrl = codeSourceUrl;
+            this.url = url;
+        }
+
+        abstract byte[] bytes() throws IOException;
+
+        /**
+         * @return signers of the resource, only available after {@link #bytes()}
+         */
+        abstract CodeSigner[] codeSigners();
+
+        /**
+         * @return manifest of the classpath entry, or null
+         */
+        abstract Manifest manifest();
+    }
+
+    private interface Source {
+        Resource find(String path);
+
+        /**
+         * @return directories containing resources, see {@link SharedJarFiles#packageOf(String)}
+         */
+        Set<String> packages();
+
+        void close();
+    }
+
+    private static final class JarSource implements Source {
+        private final URL url;
+        private final URL baseUrl;
+        private final SharedJarFiles.Jar jar;
+
+        JarSource(URL url, SharedJarFiles.Jar jar) throws MalformedURLException {
+            this.url = url;
+            this.baseUrl = new URL("jar", "", -1, url + "!/");
+            this.jar = jar;
+        }
+
+        @Override
+        public Resource find(String path) {
+            JarEntry entry;
+            URL resourceUrl;
+            try {
+                entry = jar.jarFile.getJarEntry(path);
+                if (entry == null) {
+                    return null;
+                }
+                resourceUrl = new URL(baseUrl, encode(path));
+            } catch (MalformedURLException | IllegalStateException e) {
+                // closed concurrently
+                return null;
+            }
+            return new Resource(url, resourceUrl) {
+                @Override
+                byte[] bytes() throws IOException {
+                    try (InputStream in = jar.jarFile.getInputStream(entry)) {
+                        return readAllBytes(in, entry.getSize());
+                    } catch (IllegalStateException e) {
+                        // closed concurrently
+                        throw new IOException(e);
+                    }
+                }
+
+                @Override
+                CodeSigner[] codeSigners() {
+                    return entry.getCodeSigners();
+                }
+
+                @Override
+                Manifest manifest() {
+                    return jar.manifest;
+                }
+            };
+        }
+
+        @Override
+        public Set<String> packages() {
+            return jar.packages();
+        }
+
+        @Override
+        public void close() {
+            jar.release();
+        }
+    }
+
+    private static final class DirectorySource implements Source {
+        private final URL url;
+        private final File directory;
+
+        DirectorySource(URL url, File directory) {
+            this.url = url;
+            this.directory = directory;
+        }
+
+        @Override
+        public Resource find(String path) {
+            File file = new File(directory, path.replace('/', File.separatorChar));
+            if (!file.exists()) {
+                return null;
+            }
+            URL resourceUrl;
+            try {
+                resourceUrl = new URL(url, encode(path));
+            } catch (MalformedURLException e) {
+                return null;
+            }
+            return new Resource(url, resourceUrl) {
+                @Override
+                byte[] bytes() throws IOException {
+                    return Files.readAllBytes(file.toPath());
+                }
+
+                @Override
+                CodeSigner[] codeSigners() {
+                    return null;
+                }
+
+                @Override
+                Manifest manifest() {
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public Set<String> packages() {
+            // not indexed, see LoaderClasspath
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    private static String encode(String path) {
+        try {
+            return new URI(null, null, path, null).getRawPath();
+        } catch (URISyntaxException e) {
+            return path;
+        }
+    }
+
+    static byte[] readAllBytes(InputStream in, long size) throws IOException {
+        byte[] buffer = new byte[size >= 0 && size < Integer.MAX_VALUE ? (int) size : 8192];
+        int length = 0;
+        int n;
+        while ((n = in.read(buffer, length, buffer.length - length)) >= 0) {
+            length += n;
+            if (length == buffer.length) {
+                int next = in.read();
+                if (next < 0) {
+                    break;
+                }
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, 8192));
+                buffer[length++] = (byte) next;
+            }
+        }
+        return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+    }
+}
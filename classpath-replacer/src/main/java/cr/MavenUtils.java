@@ -1,18 +1,34 @@
 package cr;
 
+import cr.resolver.ResolverHolder;
+import cr.util.Config;
 import cr.util.Const;
-import java.io.File;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
-import org.jboss.shrinkwrap.resolver.api.maven.Maven;
 
 /**
  * @author Freeman
  */
 final class MavenUtils {
-    private static final int MAX_RESOLUTION_ATTEMPTS = 3;
+    /**
+     * Max number of concurrent resolutions of {@link #resolveAll(List)}.
+     */
+    static final String PARALLELISM_PROPERTY = Config.PREFIX + "resolver.parallelism";
+
+    /**
+     * Resolved coordinates of this JVM, coordinates -> resolved jars.
+     */
+    private static final SingleFlight<String, List<URL>> resolved = new SingleFlight<>();
 
     private MavenUtils() {
         throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
@@ -21,31 +37,107 @@ final class MavenUtils {
     /**
      * Resolves Maven coordinate to a list of URLs.
      *
+     * <p> Resolution results are memoized in this JVM, concurrent callers of the same coordinate share one resolution.
+     * Resolution is delegated to the resolver chain, see {@link ResolverHolder}.
+     *
      * @param coordinate Maven coordinates of the form groupId:artifactId:version
      * @return list of URLs to the resolved artifacts
      */
     public static List<URL> resolveCoordinate(String coordinate) {
-        if (coordinate == null || coordinate.isEmpty()) {
-            throw new IllegalArgumentException("Coordinate cannot be null or empty");
+        return resolveCoordinates(Collections.singletonList(coordinate));
+    }
+
+    /**
+     * Resolves Maven coordinates as one dependency graph, the transitive dependencies are mediated by Maven rules
+     * (nearest wins, then first declared wins), so the result contains no duplicate artifacts.
+     *
+     * @param coordinates Maven coordinates of the form groupId:artifactId:version
+     * @return list of URLs to the resolved artifacts
+     * @see #resolveCoordinate(String)
+     */
+    public static List<URL> resolveCoordinates(List<String> coordinates) {
+        if (coordinates == null || coordinates.isEmpty()) {
+            throw new IllegalArgumentException("Coordinates cannot be null or empty");
         }
-        if (!Pattern.matches(Const.MAVEN_COORDINATE_PATTERN, coordinate)) {
-            throw new IllegalArgumentException("Invalid Maven coordinate: " + coordinate);
+        for (String coordinate : coordinates) {
+            if (coordinate == null || coordinate.isEmpty()) {
+                throw new IllegalArgumentException("Coordinate cannot be null or empty");
+            }
+            if (!Pattern.matches(Const.MAVEN_COORDINATE_PATTERN, coordinate)) {
+                throw new IllegalArgumentException("Invalid Maven coordinate: " + coordinate);
+            }
         }
-        Exception latestFailure = null;
-        for (int i = 0; i < MAX_RESOLUTION_ATTEMPTS; i++) {
+        // coordinates can't contain whitespace
+        String key = String.join(" ", coordinates);
+        return resolved.get(key, k -> Collections.unmodifiableList(doResolve(coordinates)));
+    }
+
+    /**
+     * Resolves independent graphs concurrently on a bounded executor.
+     *
+     * @param graphs coordinates of each graph, see {@link #resolveCoordinates(List)}
+     * @return resolved jars of each graph, in the same order as the graphs
+     */
+    public static List<List<URL>> resolveAll(List<List<String>> graphs) {
+        List<List<URL>> result = new ArrayList<>(graphs.size());
+        if (graphs.size() <= 1 || Executor.PARALLELISM <= 1) {
+            for (List<String> graph : graphs) {
+                result.add(resolveCoordinates(graph));
+            }
+            return result;
+        }
+        List<Future<List<URL>>> futures = new ArrayList<>(graphs.size());
+        for (List<String> graph : graphs) {
+            futures.add(Executor.INSTANCE.submit(() -> resolveCoordinates(graph)));
+        }
+        for (Future<List<URL>> future : futures) {
             try {
-                File[] dependencies =
-                        Maven.resolver().resolve(coordinate).withTransitivity().asFile();
-                List<URL> result = new ArrayList<>();
-                for (File dependency : dependencies) {
-                    result.add(dependency.toURI().toURL());
+                result.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while resolving " + graphs, e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
                 }
-                return result;
-            } catch (Exception ex) {
-                latestFailure = ex;
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
             }
         }
-        throw new IllegalStateException(
-                "Resolution failed after " + MAX_RESOLUTION_ATTEMPTS + " attempts", latestFailure);
+        return result;
+    }
+
+    private static List<URL> doResolve(List<String> coordinates) {
+        return ResolverHolder.getResolver()
+                .resolve(coordinates)
+                .orElseThrow(() -> new IllegalStateException("No resolver can resolve " + coordinates));
+    }
+
+    private static final class Executor {
+        private static final int PARALLELISM = Config.getInt(PARALLELISM_PROPERTY, 4);
+        private static final ExecutorService INSTANCE = newExecutor();
+
+        private static ExecutorService newExecutor() {
+            AtomicInteger counter = new AtomicInteger();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                    Math.max(1, PARALLELISM),
+                    Math.max(1, PARALLELISM),
+                    30,
+                    TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread =
+                                new Thread(runnable, "classpath-replacer-resolver-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        // don't inherit the modified class loader of the test thread
+                        thread.setContextClassLoader(MavenUtils.class.getClassLoader());
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
     }
 }
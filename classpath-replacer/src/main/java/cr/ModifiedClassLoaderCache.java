@@ -1,16 +1,80 @@
 package cr;
 
+import cr.util.Config;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
 /**
+ * Cache of {@link ModifiedClassPathClassLoader}s.
+ *
+ * <p> Loaders are content-addressed: keyed by the fingerprint of the final classpath (ordered urls) and the
+ * delegation config (parent, application class loader and {@link DelegationPolicy}), so all tests that need the same
+ * classpath share one loader, no matter which test class or {@code @Classpath} declares it.
+ *
+ * <p> Class-level {@code @Classpath} loaders are always shared. Method-level loaders are only shared with
+ * {@code -Dclasspath-replacer.loader-cache.share-method-loaders=true}, because sharing a loader also shares the static
+ * state of the test class between test methods.
+ *
+ * <p> Shared loaders are reference counted, {@link #acquire(List, ClassLoader, ClassLoader, DelegationPolicy)} and
+ * {@link #release(ModifiedClassPathClassLoader)} must be paired. A loader in use is never evicted. Unused loaders are
+ * kept for reuse and closed when evicted, the least recently used first, once one of the bounds is exceeded:
+ * <ul>
+ *     <li>{@code classpath-replacer.loader-cache.max-entries}, max number of cached loaders</li>
+ *     <li>{@code classpath-replacer.loader-cache.max-idle-millis}, max time a loader is kept unused</li>
+ *     <li>{@code classpath-replacer.loader-cache.max-metaspace-mb}, all unused loaders are evicted while the
+ *     metaspace usage is above it, the metaspace is only freed by the next GC</li>
+ * </ul>
+ * Bounds are checked when a loader is acquired or released, there is no background thread.
+ *
+ * <p> A loader whose parent is a cached loader (the base layer of {@link ClasspathLayers}) holds a reference to its
+ * parent until it is closed.
+ *
+ * <p> Set {@code -Dclasspath-replacer.loader-cache.report=true} to print each loader creation, reuse and eviction.
+ *
  * @author Freeman
  */
 public final class ModifiedClassLoaderCache {
 
+    static final String SHARE_METHOD_LOADERS_PROPERTY = Config.PREFIX + "loader-cache.share-method-loaders";
+    static final String REPORT_PROPERTY = Config.PREFIX + "loader-cache.report";
+    static final String MAX_ENTRIES_PROPERTY = Config.PREFIX + "loader-cache.max-entries";
+    static final String MAX_IDLE_MILLIS_PROPERTY = Config.PREFIX + "loader-cache.max-idle-millis";
+    static final String MAX_METASPACE_MB_PROPERTY = Config.PREFIX + "loader-cache.max-metaspace-mb";
+
+    private static final String METASPACE_POOL = "Metaspace";
+
     private static final ConcurrentMap<Class<?>, ModifiedClassPathClassLoader> cache = new ConcurrentHashMap<>();
 
+    /**
+     * Guarded by itself, in access order, the least recently used first.
+     */
+    private static final Map<Fingerprint, Entry> loaders = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Guarded by {@link #loaders}.
+     */
+    private static final Map<ModifiedClassPathClassLoader, Entry> entries = new IdentityHashMap<>();
+
+    private static final Stats stats = new Stats();
+
+    private ModifiedClassLoaderCache() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
     /*private*/ static ModifiedClassPathClassLoader get(Class<?> testClass) {
         return cache.get(testClass);
     }
@@ -18,6 +82,8 @@ public final class ModifiedClassLoaderCache {
     /**
      * Get or put a {@link ModifiedClassPathClassLoader}.
      *
+     * <p> The supplied loader is owned by the cache until {@link #release(Class)}.
+     *
      * @param testClass test class
      * @param supplier supplier
      * @return existing or supplied {@link ModifiedClassPathClassLoader}
@@ -26,4 +92,267 @@ public final class ModifiedClassLoaderCache {
             Class<?> testClass, Supplier<ModifiedClassPathClassLoader> supplier) {
         return cache.computeIfAbsent(testClass, k -> supplier.get());
     }
+
+    /**
+     * Release the {@link ModifiedClassPathClassLoader} of the test class, called when the test class is finished.
+     *
+     * @param testClass test class
+     */
+    public static void release(Class<?> testClass) {
+        ModifiedClassPathClassLoader loader = cache.remove(testClass);
+        if (loader != null) {
+            release(loader);
+        }
+    }
+
+    /**
+     * Acquire the shared {@link ModifiedClassPathClassLoader} of the classpath, create it if absent.
+     *
+     * @param urls           final classpath, in order
+     * @param parent         parent class loader
+     * @param appClassLoader class loader of test framework classes
+     * @param policy         delegation policy
+     * @return the shared {@link ModifiedClassPathClassLoader}, must be released by
+     * {@link #release(ModifiedClassPathClassLoader)}
+     */
+    static ModifiedClassPathClassLoader acquire(
+            List<URL> urls, ClassLoader parent, ClassLoader appClassLoader, DelegationPolicy policy) {
+        Fingerprint fingerprint = new Fingerprint(urls, parent, appClassLoader, policy);
+        Entry entry;
+        boolean created = false;
+        List<Entry> evicted;
+        synchronized (loaders) {
+            entry = loaders.get(fingerprint);
+            if (entry == null) {
+                entry = new Entry(
+                        fingerprint,
+                        new ModifiedClassPathClassLoader(urls.toArray(new URL[0]), parent, appClassLoader, policy));
+                loaders.put(fingerprint, entry);
+                entries.put(entry.loader, entry);
+                Entry parentEntry = entries.get(parent);
+                if (parentEntry != null) {
+                    parentEntry.references++;
+                }
+                created = true;
+            }
+            entry.references++;
+            entry.lastAccess = System.currentTimeMillis();
+            evicted = evict();
+        }
+        (created ? stats.misses : stats.hits).incrementAndGet();
+        report(created ? "created" : "reused", entry);
+        closeEvicted(evicted);
+        return entry.loader;
+    }
+
+    /**
+     * Release a {@link ModifiedClassPathClassLoader}, the loader is kept for reuse until evicted.
+     *
+     * <p> Loaders not created by the cache are closed right away.
+     *
+     * @param loader loader to release
+     */
+    static void release(ModifiedClassPathClassLoader loader) {
+        List<Entry> evicted;
+        synchronized (loaders) {
+            Entry entry = entries.get(loader);
+            if (entry == null) {
+                evicted = null;
+            } else {
+                entry.references--;
+                entry.lastAccess = System.currentTimeMillis();
+                evicted = evict();
+            }
+        }
+        if (evicted == null) {
+            close(loader);
+            return;
+        }
+        closeEvicted(evicted);
+    }
+
+    /**
+     * Get the statistics of the shared loaders.
+     *
+     * @return statistics
+     */
+    public static Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * Remove unused loaders beyond the bounds, must hold the lock of {@link #loaders}.
+     */
+    private static List<Entry> evict() {
+        int maxEntries = Config.getInt(MAX_ENTRIES_PROPERTY, 32);
+        long maxIdleMillis = Config.getLong(MAX_IDLE_MILLIS_PROPERTY, 0);
+        long maxMetaspaceMb = Config.getLong(MAX_METASPACE_MB_PROPERTY, 0);
+        boolean metaspaceExceeded = maxMetaspaceMb > 0 && metaspaceUsed() > maxMetaspaceMb * 1024 * 1024;
+        long now = System.currentTimeMillis();
+
+        List<Entry> evicted = new ArrayList<>();
+        for (Iterator<Entry> it = loaders.values().iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (entry.references > 0) {
+                continue;
+            }
+            if (metaspaceExceeded
+                    || (maxEntries > 0 && loaders.size() > maxEntries)
+                    || (maxIdleMillis > 0 && now - entry.lastAccess > maxIdleMillis)) {
+                it.remove();
+                entries.remove(entry.loader);
+                evicted.add(entry);
+            }
+        }
+        return evicted;
+    }
+
+    private static long metaspaceUsed() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (METASPACE_POOL.equals(pool.getName())) {
+                return pool.getUsage().getUsed();
+            }
+        }
+        return -1;
+    }
+
+    private static void closeEvicted(List<Entry> evicted) {
+        for (Entry entry : evicted) {
+            stats.evictions.incrementAndGet();
+            report("evicted", entry);
+            close(entry.loader);
+        }
+    }
+
+    private static void close(ModifiedClassPathClassLoader loader) {
+        try {
+            loader.close();
+        } catch (IOException ignored) {
+            // the jar files are closed on a best-effort basis
+        }
+        ClassLoader parent = loader.getParent();
+        boolean cachedParent;
+        synchronized (loaders) {
+            cachedParent = entries.containsKey(parent);
+        }
+        if (cachedParent) {
+            release((ModifiedClassPathClassLoader) parent);
+        }
+    }
+
+    private static void report(String action, Entry entry) {
+        if (Config.getBoolean(REPORT_PROPERTY, false)) {
+            System.err.println("[classpath-replacer] class loader " + action + " for "
+                    + entry.fingerprint.urls.size() + " classpath entries ("
+                    + Integer.toHexString(entry.fingerprint.hashCode()) + "), " + stats);
+        }
+    }
+
+    /**
+     * Statistics of the shared loaders.
+     */
+    public static final class Stats {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+
+        private Stats() {}
+
+        /**
+         * @return number of times an existing loader was reused
+         */
+        public long getHits() {
+            return hits.get();
+        }
+
+        /**
+         * @return number of loaders created
+         */
+        public long getMisses() {
+            return misses.get();
+        }
+
+        /**
+         * @return number of loaders evicted and closed
+         */
+        public long getEvictions() {
+            return evictions.get();
+        }
+
+        /**
+         * @return number of loaders currently cached
+         */
+        public int getSize() {
+            synchronized (loaders) {
+                return loaders.size();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions() + ", size="
+                    + getSize();
+        }
+    }
+
+    private static final class Entry {
+        private final Fingerprint fingerprint;
+        private final ModifiedClassPathClassLoader loader;
+        private int references;
+        private long lastAccess;
+
+        Entry(Fingerprint fingerprint, ModifiedClassPathClassLoader loader) {
+            this.fingerprint = fingerprint;
+            this.loader = loader;
+        }
+    }
+
+    /**
+     * Normalized fingerprint of a classpath and its delegation config, class loaders are compared by identity.
+     */
+    private static final class Fingerprint {
+        private final List<String> urls;
+        private final ClassLoader parent;
+        private final ClassLoader appClassLoader;
+        private final DelegationPolicy policy;
+        private final int hash;
+
+        Fingerprint(List<URL> urls, ClassLoader parent, ClassLoader appClassLoader, DelegationPolicy policy) {
+            List<String> normalized = new ArrayList<>(urls.size());
+            for (URL url : urls) {
+                normalized.add(url.toExternalForm());
+            }
+            this.urls = Collections.unmodifiableList(normalized);
+            this.parent = parent;
+            this.appClassLoader = appClassLoader;
+            // policies of the same rules are the same instance
+            this.policy = policy;
+            this.hash = Objects.hash(
+                    this.urls,
+                    System.identityHashCode(parent),
+                    System.identityHashCode(appClassLoader),
+                    System.identityHashCode(policy));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint that = (Fingerprint) o;
+            return hash == that.hash
+                    && parent == that.parent
+                    && appClassLoader == that.appClassLoader
+                    && policy == that.policy
+                    && urls.equals(that.urls);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
 }
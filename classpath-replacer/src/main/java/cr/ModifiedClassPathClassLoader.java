@@ -1,26 +1,47 @@
 package cr;
 
-import cr.packager.PackagerHolder;
+import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.security.CodeSource;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.jar.Manifest;
 
 /**
+ * A {@link URLClassLoader} over a modified classpath.
+ *
+ * <p> The loader is parallel capable: classes are loaded under a lock per class name rather than the whole loader, so a
+ * shared class-level loader doesn't serialise the tests running in parallel. The {@link DelegationPolicy} caches,
+ * the {@link LoaderClasspath} index and the shared jars are thread-safe, concurrent definitions of a package are
+ * tolerated.
+ *
  * @author Freeman
  */
 public class ModifiedClassPathClassLoader extends URLClassLoader {
 
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
     private final ClassLoader appClassLoader;
-    private final List<String> internalPackages;
+    private final DelegationPolicy delegationPolicy;
+
+    /**
+     * Nullable, classes and resources are looked up by {@link URLClassLoader} if null.
+     */
+    private final LoaderClasspath classpath;
 
     public ModifiedClassPathClassLoader(URL[] urls, ClassLoader parent, ClassLoader appClassLoader) {
+        this(urls, parent, appClassLoader, DelegationPolicy.defaults());
+    }
+
+    ModifiedClassPathClassLoader(
+            URL[] urls, ClassLoader parent, ClassLoader appClassLoader, DelegationPolicy delegationPolicy) {
         super(urls, parent);
         this.appClassLoader = appClassLoader;
-        this.internalPackages = PackagerHolder.getPackagers().stream()
-                .flatMap(packager -> Stream.of(packager.internalPackages()))
-                .collect(Collectors.toList());
+        this.delegationPolicy = delegationPolicy;
+        this.classpath = LoaderClasspath.of(urls);
     }
 
     public static ModifiedClassPathClassLoaderBuilder builder(ClassLoader parent) {
@@ -29,18 +50,85 @@ public class ModifiedClassPathClassLoader extends URLClassLoader {
 
     @Override
     public Class<?> loadClass(String name) throws ClassNotFoundException {
-        if (isTestFrameworkInternalPackage(name)) {
-            return Class.forName(name, false, this.appClassLoader);
+        switch (delegationPolicy.decide(name)) {
+            case PARENT_FIRST:
+                return Class.forName(name, false, this.appClassLoader);
+            case HIDDEN:
+                throw new ClassNotFoundException(name);
+            default:
+                return super.loadClass(name);
+        }
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        if (classpath == null) {
+            return super.findClass(name);
+        }
+        LoaderClasspath.Resource resource =
+                classpath.find(name.replace('.', '/').concat(".class"));
+        if (resource == null) {
+            throw new ClassNotFoundException(name);
+        }
+        try {
+            return defineClass(name, resource);
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+    }
+
+    @Override
+    public URL findResource(String name) {
+        if (classpath == null) {
+            return super.findResource(name);
+        }
+        LoaderClasspath.Resource resource = classpath.find(name);
+        return resource != null ? resource.url : null;
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        if (classpath == null) {
+            return super.findResources(name);
+        }
+        return Collections.enumeration(classpath.findAll(name));
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (classpath != null) {
+                classpath.close();
+            }
+        } finally {
+            super.close();
         }
-        return super.loadClass(name);
     }
 
-    private boolean isTestFrameworkInternalPackage(String name) {
-        for (String pkg : internalPackages) {
-            if (name.startsWith(pkg)) {
-                return true;
+    private Class<?> defineClass(String name, LoaderClasspath.Resource resource) throws IOException {
+        int index = name.lastIndexOf('.');
+        if (index > 0) {
+            definePackageIfAbsent(name.substring(0, index), resource);
+        }
+        byte[] bytes = resource.bytes();
+        CodeSource codeSource = new CodeSource(resource.codeSourceUrl, resource.codeSigners());
+        return defineClass(name, bytes, 0, bytes.length, codeSource);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void definePackageIfAbsent(String packageName, LoaderClasspath.Resource resource) {
+        if (getPackage(packageName) != null) {
+            return;
+        }
+        try {
+            Manifest manifest = resource.manifest();
+            if (manifest != null) {
+                definePackage(packageName, manifest, resource.codeSourceUrl);
+            } else {
+                definePackage(packageName, null, null, null, null, null, null, null);
             }
+        } catch (IllegalArgumentException ignored) {
+            // defined concurrently
         }
-        return false;
     }
 }
@@ -2,45 +2,41 @@ package cr;
 
 import cr.action.Add;
 import cr.action.Exclude;
-import cr.util.Const;
-import java.io.File;
-import java.lang.management.ManagementFactory;
-import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.URLClassLoader;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.function.Supplier;
-import java.util.jar.Attributes;
-import java.util.jar.JarFile;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Set;
 
 /**
  * @author Freeman
  */
 public class ModifiedClassPathClassLoaderBuilder {
-    private static final Pattern INTELLIJ_CLASSPATH_JAR_PATTERN = Pattern.compile(".*classpath(\\d+)?\\.jar");
-
     private final List<Add> adds = new LinkedList<>();
     private final List<Exclude> excludes = new LinkedList<>();
     private final ClassLoader parent;
 
+    /**
+     * Nullable, exact coordinates of the classpath entries supplied by the build.
+     */
+    private final ClasspathMetadata metadata;
+
     /**
      * Nullable, because {@link ModifiedClassPathClassLoaderBuilder} may be used to programmatically generate classloader.
      */
     private Classpath classpath;
 
+    private final List<String> parentFirst = new ArrayList<>();
+
     ModifiedClassPathClassLoaderBuilder(ClassLoader parent) {
+        this(parent, ClasspathMetadata.getInstance());
+    }
+
+    ModifiedClassPathClassLoaderBuilder(ClassLoader parent, ClasspathMetadata metadata) {
         this.parent = parent;
+        this.metadata = metadata;
     }
 
     public ModifiedClassPathClassLoaderBuilder exclude(String... patterns) {
@@ -53,327 +49,150 @@ public class ModifiedClassPathClassLoaderBuilder {
         return this;
     }
 
+    /**
+     * Load classes of the given prefixes by the parent class loader, like the test framework classes.
+     *
+     * @param prefixes package or class name prefixes
+     * @return this builder
+     * @see DelegationPolicy
+     */
+    public ModifiedClassPathClassLoaderBuilder parentFirst(String... prefixes) {
+        Collections.addAll(parentFirst, prefixes);
+        return this;
+    }
+
     public ModifiedClassPathClassLoaderBuilder classpathReplacer(Classpath classpath) {
         this.classpath = classpath;
         return this;
     }
 
     public ModifiedClassPathClassLoader build() {
-        URL[] urls = extractUrls(parent);
-        List<URL> result = Arrays.stream(urls)
-                .collect(Collectors.toCollection(
-                        LinkedList::new)); // we may have some exclude actions, LinkedList is better
-        // add first, then exclude
-        for (Add add : adds) {
-            add(result, add);
-        }
-        for (Exclude exclude : excludes) {
-            exclude(result, exclude);
-        }
-        return new ModifiedClassPathClassLoader(result.toArray(new URL[0]), parent.getParent(), parent);
-    }
-
-    private void add(List<URL> result, Add add) {
-        // Add to the beginning of the list to make sure the added jars are loaded first.
-        for (String coordinate : add.coordinates()) {
-            result.addAll(0, MavenUtils.resolveCoordinate(coordinate));
+        List<URL> result = buildUrls();
+        DelegationPolicy policy = DelegationPolicy.of(parentFirst.toArray(new String[0]));
+        ClasspathLayers layers = layers(result);
+        if (layers == null) {
+            return new ModifiedClassPathClassLoader(result.toArray(new URL[0]), parent.getParent(), parent, policy);
         }
+        // the reference to the base layer is released when the loader is released
+        ModifiedClassPathClassLoader base =
+                ModifiedClassLoaderCache.acquire(layers.base, parent.getParent(), parent, policy);
+        return new ModifiedClassPathClassLoader(layers.delta.toArray(new URL[0]), base, parent, policy);
     }
 
-    private void exclude(List<URL> result, Exclude exclude) {
-        // com.google.code.gson:gson:2.8.6 -> [file:~/.m2/repository/com/google/code/gson/gson/2.8.6/gson-2.8.6.jar]
-        Map<String, List<URL>> patternToJars = new HashMap<>();
-        // com.google.code.gson:gson -> [2.8.6, 2.8.7]
-        Map<String, List<String>> patternToVersions = new HashMap<>();
-
-        List<URL> copy = new ArrayList<>(result);
-        for (String pattern : exclude.patterns()) {
-            Supplier<Map<String, List<String>>> patternToVersionsSupplier = () -> {
-                patternToVersions.computeIfAbsent(pattern, k -> findVersions(copy, pattern));
-                return patternToVersions;
-            };
-            for (URL url : copy) {
-                if (needRemove(patternToVersionsSupplier, url, pattern, patternToJars)) {
-                    result.remove(url);
-                }
-            }
-        }
-    }
-
-    private boolean needRemove(
-            Supplier<Map<String, List<String>>> patternToVersionsSupplier,
-            URL url,
-            String pattern,
-            Map<String, List<URL>> patternToJars) {
-        boolean excludeTransitive = classpath != null && classpath.excludeTransitive();
-
-        if (pattern.matches(Const.MAVEN_COORDINATE_WITH_VERSION_PATTERN)) {
-            return matchMavenCoordinateWithVersionPattern(excludeTransitive, url, pattern, patternToJars);
-        }
-
-        if (pattern.matches(Const.MAVEN_COORDINATE_PATTERN)) {
-            return matchMavenCoordinatePattern(
-                    excludeTransitive, url, pattern, patternToJars, patternToVersionsSupplier);
-        }
-
-        if (pattern.contains("*")) {
-            return matchWildcardPattern(pattern, url);
-        }
-
-        if (pattern.endsWith(".jar")) {
-            return matchExactFileNamePattern(pattern, url);
-        }
-
-        throw new IllegalArgumentException(String.format(Const.EXCLUDE_ILLEGAL_PATTERN_MESSAGE_FORMAT, pattern));
-    }
-
-    private boolean matchMavenCoordinateWithVersionPattern(
-            boolean recursiveExclude, URL url, String pattern, Map<String, List<URL>> patternToJars) {
-        if (!recursiveExclude) {
-            String[] gav = pattern.split(":");
-            if (!isSameGroupIdWithExactMatch(url, gav[0].split("\\."))) {
-                return false;
-            }
-            String artifactId = gav[1];
-            String version = gav[2];
-            String jarName = String.format("%s-%s.jar", artifactId, version);
-            return Objects.equals(jarName, fileName(url));
-        }
-
-        return patternToJars.computeIfAbsent(pattern, s -> MavenUtils.resolveCoordinate(pattern)).stream()
-                .anyMatch(jarPath -> isSameJar(url, jarPath));
-    }
-
-    private boolean matchMavenCoordinatePattern(
-            boolean recursiveExclude,
-            URL url,
-            String pattern,
-            Map<String, List<URL>> patternToJars,
-            Supplier<Map<String, List<String>>> patternToVersionsSupplier) {
-        if (!recursiveExclude) {
-            String[] gav = pattern.split(":");
-            if (!isSameGroupIdWithExactMatch(url, gav[0].split("\\."))) {
-                return false;
-            }
-            String artifactId = gav[1];
-            String fileName = fileName(url);
-            if (fileName == null || !fileName.startsWith(artifactId)) {
-                return false;
-            }
-            String version =
-                    fileName.substring(artifactId.length() + "-".length(), fileName.length() - ".jar".length());
-            return version.matches(Const.VERSION_PATTERN);
+    /**
+     * Build or reuse the shared class loader of the same final classpath, see {@link ModifiedClassLoaderCache}.
+     *
+     * <p> The loader must be released by {@link ModifiedClassLoaderCache#release(ModifiedClassPathClassLoader)}.
+     */
+    ModifiedClassPathClassLoader buildShared() {
+        List<URL> result = buildUrls();
+        DelegationPolicy policy = DelegationPolicy.of(parentFirst.toArray(new String[0]));
+        ClasspathLayers layers = layers(result);
+        if (layers == null) {
+            return ModifiedClassLoaderCache.acquire(result, parent.getParent(), parent, policy);
+        }
+        ModifiedClassPathClassLoader base =
+                ModifiedClassLoaderCache.acquire(layers.base, parent.getParent(), parent, policy);
+        try {
+            return ModifiedClassLoaderCache.acquire(layers.delta, base, parent, policy);
+        } finally {
+            // the delta loader holds its own reference to the base layer
+            ModifiedClassLoaderCache.release(base);
         }
-
-        return patternToVersionsSupplier.get().getOrDefault(pattern, Collections.emptyList()).stream()
-                .anyMatch(version -> {
-                    String coordinate = pattern + ":" + version;
-                    return patternToJars
-                            .computeIfAbsent(coordinate, s -> MavenUtils.resolveCoordinate(coordinate))
-                            .stream()
-                            .anyMatch(jarPath -> isSameJar(url, jarPath));
-                });
     }
 
-    private boolean matchWildcardPattern(String pattern, URL url) {
-        String regex = pattern.replace(".", "\\.").replace("*", ".*");
-        return Pattern.matches(regex, fileName(url));
+    private ClasspathLayers layers(List<URL> urls) {
+        return ClasspathLayers.isEnabled()
+                ? ClasspathLayers.split(urls, ClasspathSnapshot.of(parent).urls(), metadata)
+                : null;
     }
 
-    private boolean matchExactFileNamePattern(String pattern, URL url) {
-        return pattern.equals(fileName(url));
+    /**
+     * Resolve all coordinates without building the class loader, resolution results are memoized by
+     * {@link MavenUtils}, so the later {@link #build()} is cheap.
+     */
+    void prefetch() {
+        buildUrls();
     }
 
-    private static boolean isSameJar(URL url, URL mavenJarUrl) {
-        if (url == null || mavenJarUrl == null) {
-            return false;
+    private List<URL> buildUrls() {
+        // add first, then exclude
+        // Add to the beginning of the list to make sure the added jars are loaded first.
+        // Later coordinates take precedence, coordinates of different artifacts are resolved as one graph.
+        List<List<String>> graphs = new ArrayList<>();
+        for (Add add : adds) {
+            graphs.addAll(splitIntoGraphs(add.coordinates()));
         }
-
-        if (Objects.equals(url, mavenJarUrl)) {
-            return true;
+        // graphs are resolved concurrently, but merged in declared order
+        List<List<URL>> resolved = MavenUtils.resolveAll(graphs);
+        List<URL> result = new ArrayList<>();
+        for (int i = resolved.size() - 1; i >= 0; i--) {
+            result.addAll(resolved.get(i));
         }
-
-        // compare file name
-        String fileName = fileName(url);
-        if (fileName == null) {
-            return false;
+        result.addAll(ClasspathSnapshot.of(parent).urls());
+        if (!adds.isEmpty()) {
+            removeDuplicates(result);
         }
-        String jarFileName = fileName(mavenJarUrl);
-        if (!Objects.equals(fileName, jarFileName)) {
-            return false;
+        for (Exclude exclude : excludes) {
+            result = exclude(result, exclude);
         }
-
-        // compare group id
-        // remove the last 3 '/' for maven jar path
-        String mavenJarStr = mavenJarUrl.toString();
-        String temp = mavenJarStr.substring(0, mavenJarStr.lastIndexOf("/"));
-        temp = temp.substring(0, temp.lastIndexOf("/"));
-        String[] arr = temp.substring(0, temp.lastIndexOf("/")).split("/");
-        return isSameGroupIdWithFuzzyMatch(url, arr);
+        return result;
     }
 
     /**
-     * Only take the last 2 elements of the group id array to compare.
+     * Split coordinates into graphs that can be resolved together.
      *
-     * @param url        jar url
-     * @param groupIdArr maven group id array, e.g. [com, google, code, gson]
-     * @return true if the group id is same
-     */
-    private static boolean isSameGroupIdWithFuzzyMatch(URL url, String[] groupIdArr) {
-        String urlStr = url.toString();
-
-        // gradle project, jar cache path is like
-        // ~/.gradle/caches/modules-2/files-2.1/com.google.code.gson/gson/2.8.6/3f7e1e9e8e1b0e1e8e1b0e1b0e1b0e1b0e1b0e1b/gson-2.8.6.jar
-        String gradlePartGroupId = groupIdArr[groupIdArr.length - 2] + "." + groupIdArr[groupIdArr.length - 1] + "/";
-        if (urlStr.contains(gradlePartGroupId)) {
-            return true;
-        }
-
-        // maven project, jar cache path is like ~/.m2/repository/com/google/code/gson/gson/2.8.6/gson-2.8.6.jar
-        String mavenPartGroupId =
-                "/" + groupIdArr[groupIdArr.length - 2] + "/" + groupIdArr[groupIdArr.length - 1] + "/";
-        if (urlStr.contains(mavenPartGroupId)) {
-            return true;
-        }
-
-        // TODO: here to support the other project types, non maven and non gradle
-
-        // artifact id is the same, but group id is different
-        return false;
-    }
-
-    /**
-     * Url must contain all the elements in groupIdArr.
+     * <p> Maven mediation keeps only one version of an artifact, so different versions of the same artifact
+     * (e.g. spring-boot 2.7.0 and 2.7.1) must be resolved in different graphs.
+     *
+     * <p> Coordinates in each graph are reversed, so the later declared coordinates win the mediation.
      *
-     * @param url        jar url
-     * @param groupIdArr maven group id array, e.g. [com, google, code, gson]
-     * @return true if the group id is same
+     * @param coordinates coordinates in declared order
+     * @return graphs in declared order
      */
-    private static boolean isSameGroupIdWithExactMatch(URL url, String[] groupIdArr) {
-        String urlStr = url.toString();
-
-        // gradle project, jar cache path is like
-        // ~/.gradle/caches/modules-2/files-2.1/com.google.code.gson/gson/2.8.6/3f7e1e9e8e1b0e1e8e1b0e1b0e1b0e1b0e1b0e1b/gson-2.8.6.jar
-        String gradlePartGroupId = "/" + String.join(".", groupIdArr) + "/";
-        if (urlStr.contains(gradlePartGroupId)) {
-            return true;
-        }
-
-        // maven project, jar cache path is like ~/.m2/repository/com/google/code/gson/gson/2.8.6/gson-2.8.6.jar
-        String mavenPartGroupId = "/" + String.join("/", groupIdArr) + "/";
-        if (urlStr.contains(mavenPartGroupId)) {
-            return true;
-        }
-
-        // TODO: here to support the other project types, non maven and non gradle
-
-        // artifact id is the same, but group id is different
-        return false;
-    }
-
-    private static List<String> findVersions(List<URL> urls, String groupAndArtifact) {
-        List<String> versions = new ArrayList<>();
-        String[] ga = groupAndArtifact.split(":");
-        String artifactId = ga[1];
-        String regex = String.format("%s-(.*)\\.jar", artifactId);
-        Pattern pattern = Pattern.compile(regex);
-        for (URL url : urls) {
-            String fileName = fileName(url);
-            if (fileName == null) {
-                continue;
-            }
-            if (!isSameGroupIdWithExactMatch(url, ga[0].split("\\."))) {
-                continue;
-            }
-            Matcher matcher = pattern.matcher(fileName);
-            if (matcher.find()) {
-                String version = matcher.group(1);
-                if (version.matches(Const.VERSION_PATTERN)) {
-                    versions.add(version);
-                }
+    private static List<List<String>> splitIntoGraphs(List<String> coordinates) {
+        List<List<String>> graphs = new ArrayList<>();
+        LinkedList<String> graph = new LinkedList<>();
+        Set<String> groupAndArtifacts = new HashSet<>();
+        for (String coordinate : coordinates) {
+            String groupAndArtifact = coordinate.substring(0, coordinate.lastIndexOf(':'));
+            if (!groupAndArtifacts.add(groupAndArtifact)) {
+                graphs.add(graph);
+                graph = new LinkedList<>();
+                groupAndArtifacts.clear();
+                groupAndArtifacts.add(groupAndArtifact);
             }
+            graph.addFirst(coordinate);
         }
-        return versions;
-    }
-
-    private static String fileName(URL url) {
-        if (!"file".equals(url.getProtocol())) {
-            return null;
-        }
-        try {
-            return new File(url.toURI()).getName();
-        } catch (URISyntaxException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    private static URL[] extractUrls(ClassLoader classLoader) {
-        List<URL> extractedUrls = new ArrayList<>();
-        doExtractUrls(classLoader).forEach((URL url) -> {
-            if (isManifestOnlyJar(url)) {
-                extractedUrls.addAll(extractUrlsFromManifestClassPath(url));
-            } else {
-                extractedUrls.add(url);
-            }
-        });
-        return extractedUrls.toArray(new URL[0]);
-    }
-
-    private static Stream<URL> doExtractUrls(ClassLoader classLoader) {
-        if (classLoader instanceof URLClassLoader) {
-            return Stream.of(((URLClassLoader) classLoader).getURLs());
-        }
-        return Stream.of(ManagementFactory.getRuntimeMXBean().getClassPath().split(File.pathSeparator))
-                .map(ModifiedClassPathClassLoaderBuilder::toURL);
-    }
-
-    private static URL toURL(String entry) {
-        try {
-            return new File(entry).toURI().toURL();
-        } catch (Exception ex) {
-            throw new IllegalArgumentException(ex);
+        if (!graph.isEmpty()) {
+            graphs.add(graph);
         }
+        return graphs;
     }
 
-    private static boolean isManifestOnlyJar(URL url) {
-        return isShortenedIntelliJJar(url);
-    }
-
-    private static boolean isShortenedIntelliJJar(URL url) {
-        String urlPath = url.getPath();
-        boolean isCandidate = INTELLIJ_CLASSPATH_JAR_PATTERN.matcher(urlPath).matches();
-        if (isCandidate) {
-            try {
-                Attributes attributes = getManifestMainAttributesFromUrl(url);
-                String createdBy = attributes.getValue("Created-By");
-                return createdBy != null && createdBy.contains("IntelliJ");
-            } catch (Exception ignored) {
-            }
-        }
-        return false;
+    /**
+     * The first occurrence wins when loading classes, so the later duplicates are useless.
+     */
+    private static void removeDuplicates(List<URL> urls) {
+        Set<String> seen = new HashSet<>();
+        urls.removeIf(url -> !seen.add(url.toString()));
     }
 
-    private static List<URL> extractUrlsFromManifestClassPath(URL bootJar) {
-        List<URL> urls = new ArrayList<>();
-        try {
-            for (String entry : getClassPath(bootJar)) {
-                urls.add(new URL(entry));
-            }
-        } catch (Exception ex) {
-            throw new RuntimeException(ex);
+    /**
+     * Coordinates to exclude transitively are resolved concurrently, the resolution results are memoized by
+     * {@link MavenUtils}.
+     */
+    private List<URL> exclude(List<URL> urls, Exclude exclude) {
+        ExcludePlan plan = ExcludePlan.compile(exclude, isExcludeTransitive(), urls, metadata);
+        List<List<String>> coordinates = new ArrayList<>();
+        for (String coordinate : plan.coordinatesToResolve()) {
+            coordinates.add(Collections.singletonList(coordinate));
         }
-        return urls;
+        MavenUtils.resolveAll(coordinates);
+        return plan.apply();
     }
 
-    private static String[] getClassPath(URL bootJar) throws Exception {
-        Attributes attributes = getManifestMainAttributesFromUrl(bootJar);
-        String classpathListStr = attributes.getValue(Attributes.Name.CLASS_PATH);
-        return classpathListStr.split(" ");
-    }
-
-    private static Attributes getManifestMainAttributesFromUrl(URL url) throws Exception {
-        try (JarFile jarFile = new JarFile(new File(url.toURI()))) {
-            return jarFile.getManifest().getMainAttributes();
-        }
+    private boolean isExcludeTransitive() {
+        return classpath != null && classpath.excludeTransitive();
     }
 }
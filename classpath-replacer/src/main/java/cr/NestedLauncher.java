@@ -0,0 +1,112 @@
+package cr;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.WeakHashMap;
+import org.junit.platform.engine.TestEngine;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.launcher.EngineFilter;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.core.LauncherConfig;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+
+/**
+ * {@link Launcher}s running tests inside {@link ModifiedClassPathClassLoader}s, one per class loader.
+ *
+ * <p> {@link LauncherFactory#create()} discovers all engines, listeners and filters by {@link ServiceLoader} and, since
+ * JUnit Platform 1.8, does it again for every request. The launcher of a class loader is created once from a
+ * {@link org.junit.platform.launcher.LauncherSession} with the Jupiter engine only, discovered once, so crossing into a
+ * modified classpath costs close to nothing after the first test.
+ *
+ * <p> Falls back to {@link LauncherFactory#create()} when the Jupiter engine is not found or the JUnit Platform is
+ * older than 1.8.
+ *
+ * @author Freeman
+ */
+final class NestedLauncher {
+
+    static final String JUPITER_ENGINE_ID = "junit-jupiter";
+
+    private static final String PARALLEL_ENABLED = "junit.jupiter.execution.parallel.enabled";
+
+    private static final Map<ClassLoader, Launcher> launchers = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private NestedLauncher() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Get the launcher of the class loader, created on first access.
+     *
+     * @param classLoader modified class loader
+     * @return the launcher, safe to use concurrently with listeners passed per execution
+     */
+    static Launcher of(ClassLoader classLoader) {
+        return launchers.computeIfAbsent(classLoader, NestedLauncher::create);
+    }
+
+    /**
+     * Create a request for a nested launch.
+     *
+     * <p> Nested launches run on the calling thread, parallel execution is disabled for them, otherwise each nested
+     * launch would start its own thread pool. Tests still run in parallel by the outer launch.
+     *
+     * @return request builder with the Jupiter engine only
+     */
+    static LauncherDiscoveryRequestBuilder request() {
+        return LauncherDiscoveryRequestBuilder.request()
+                .filters(EngineFilter.includeEngines(JUPITER_ENGINE_ID))
+                .configurationParameter(PARALLEL_ENABLED, "false");
+    }
+
+    /**
+     * Get the unique id of a test in the nested launch, the outer launch may run Jupiter inside another engine, e.g.
+     * {@code [engine:junit-platform-suite]/[suite:...]/[engine:junit-jupiter]/...}.
+     *
+     * @param uniqueId unique id of the test in the outer launch
+     * @return the unique id starting from the Jupiter engine
+     */
+    static UniqueId uniqueId(String uniqueId) {
+        List<UniqueId.Segment> segments = UniqueId.parse(uniqueId).getSegments();
+        int engine = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            UniqueId.Segment segment = segments.get(i);
+            if ("engine".equals(segment.getType()) && JUPITER_ENGINE_ID.equals(segment.getValue())) {
+                engine = i;
+            }
+        }
+        UniqueId result = UniqueId.forEngine(JUPITER_ENGINE_ID);
+        for (UniqueId.Segment segment : segments.subList(engine + 1, segments.size())) {
+            result = result.append(segment);
+        }
+        return result;
+    }
+
+    private static Launcher create(ClassLoader classLoader) {
+        TestEngine jupiter = null;
+        for (TestEngine engine : ServiceLoader.load(TestEngine.class, classLoader)) {
+            if (JUPITER_ENGINE_ID.equals(engine.getId())) {
+                jupiter = engine;
+                break;
+            }
+        }
+        if (jupiter == null) {
+            return LauncherFactory.create();
+        }
+        try {
+            LauncherConfig config = LauncherConfig.builder()
+                    .enableTestEngineAutoRegistration(false)
+                    .enableLauncherSessionListenerAutoRegistration(false)
+                    .addTestEngines(jupiter)
+                    .build();
+            // the session is never closed, it has no session listeners
+            return LauncherFactory.openSession(config).getLauncher();
+        } catch (NoSuchMethodError | NoClassDefFoundError e) {
+            // JUnit Platform < 1.8
+            return LauncherFactory.create();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package cr;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipFile;
+
+/**
+ * JVM-wide registry of open {@link JarFile}s, shared by all {@link ModifiedClassPathClassLoader}s.
+ *
+ * <p> Each jar is opened once, so its central directory is parsed and held once no matter how many loaders use it.
+ * Jars are keyed by canonical path and reference counted, a jar is closed when the last loader using it is closed.
+ *
+ * <p> Like {@link java.net.URLClassLoader}, multi-release jars are opened for the runtime version on JDK 9+.
+ *
+ * @author Freeman
+ */
+final class SharedJarFiles {
+
+    private static final String VERSIONS_PREFIX = "META-INF/versions/";
+
+    /**
+     * Canonical path -> jar, guarded by itself.
+     */
+    private static final Map<String, Jar> jars = new HashMap<>();
+
+    private SharedJarFiles() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Acquire the shared jar of the file, open it if absent.
+     *
+     * @param file jar file
+     * @return the shared jar, must be released by {@link Jar#release()}
+     * @throws IOException if the file can't be opened as a jar
+     */
+    static Jar acquire(File file) throws IOException {
+        String path = file.getCanonicalPath();
+        synchronized (jars) {
+            Jar jar = jars.get(path);
+            if (jar == null) {
+                jar = new Jar(path, open(new File(path)));
+                jars.put(path, jar);
+            }
+            jar.references++;
+            return jar;
+        }
+    }
+
+    private static JarFile open(File file) throws IOException {
+        if (MultiRelease.CONSTRUCTOR == null) {
+            return new JarFile(file);
+        }
+        try {
+            return MultiRelease.CONSTRUCTOR.newInstance(file, true, ZipFile.OPEN_READ, MultiRelease.RUNTIME_VERSION);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            return new JarFile(file);
+        }
+    }
+
+    /**
+     * @param path resource path
+     * @return directory of the resource, like {@code com/google/gson} for {@code com/google/gson/Gson.class}
+     */
+    static String packageOf(String path) {
+        int index = path.lastIndexOf('/');
+        return index >= 0 ? path.substring(0, index) : "";
+    }
+
+    /**
+     * @return number of open jars
+     */
+    static int size() {
+        synchronized (jars) {
+            return jars.size();
+        }
+    }
+
+    /**
+     * {@code JarFile(File, boolean, int, Runtime.Version)} of JDK 9+.
+     */
+    private static final class MultiRelease {
+        private static final Constructor<JarFile> CONSTRUCTOR;
+        private static final Object RUNTIME_VERSION;
+
+        static {
+            Constructor<JarFile> constructor;
+            Object version;
+            try {
+                Class<?> versionClass = Class.forName("java.lang.Runtime$Version");
+                version = Runtime.class.getMethod("version").invoke(null);
+                constructor = JarFile.class.getConstructor(File.class, boolean.class, int.class, versionClass);
+            } catch (ReflectiveOperationException e) {
+                // JDK 8
+                constructor = null;
+                version = null;
+            }
+            CONSTRUCTOR = constructor;
+            RUNTIME_VERSION = version;
+        }
+    }
+
+    /**
+     * A shared open jar, thread-safe.
+     */
+    static final class Jar {
+        private final String path;
+        final JarFile jarFile;
+        /**
+         * Nullable.
+         */
+        final Manifest manifest;
+
+        private int references;
+
+        /**
+         * Guarded by this, null until first use.
+         */
+        private Set<String> packages;
+
+        private Jar(String path, JarFile jarFile) throws IOException {
+            this.path = path;
+            this.jarFile = jarFile;
+            try {
+                this.manifest = jarFile.getManifest();
+            } catch (IOException | RuntimeException e) {
+                jarFile.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Get the directories of all entries, e.g. {@code com/google/gson} for {@code com/google/gson/Gson.class},
+         * {@code ""} for entries in the root. Versioned entries of multi-release jars belong to their base directory.
+         *
+         * @return directories of the entries, computed once per jar
+         */
+        synchronized Set<String> packages() {
+            if (packages == null) {
+                Set<String> result = new HashSet<>();
+                Enumeration<JarEntry> entries = jarFile.entries();
+                while (entries.hasMoreElements()) {
+                    result.add(packageOf(baseName(entries.nextElement().getName())));
+                }
+                packages = Collections.unmodifiableSet(result);
+            }
+            return packages;
+        }
+
+        private static String baseName(String name) {
+            if (!name.startsWith(VERSIONS_PREFIX)) {
+                return name;
+            }
+            int index = name.indexOf('/', VERSIONS_PREFIX.length());
+            return index >= 0 ? name.substring(index + 1) : name;
+        }
+
+        /**
+         * Release the jar, closed when it's no longer used by any loader.
+         */
+        void release() {
+            synchronized (jars) {
+                if (--references > 0) {
+                    return;
+                }
+                jars.remove(path);
+            }
+            try {
+                jarFile.close();
+            } catch (IOException ignored) {
+                // nothing to do
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package cr;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Memoizes computations by key, concurrent callers of the same key wait for the in-flight computation
+ * instead of starting a duplicate one.
+ *
+ * <p> Failed computations are not memoized, the next caller will compute again.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author Freeman
+ */
+final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Get the memoized value of the key, compute it if absent.
+     *
+     * @param key      key
+     * @param function function to compute the value
+     * @return the value
+     */
+    V get(K key, Function<K, V> function) {
+        CompletableFuture<V> flight = flights.get(key);
+        if (flight == null) {
+            CompletableFuture<V> created = new CompletableFuture<>();
+            flight = flights.putIfAbsent(key, created);
+            if (flight == null) {
+                flight = created;
+                try {
+                    created.complete(function.apply(key));
+                } catch (Throwable e) {
+                    flights.remove(key, created);
+                    created.completeExceptionally(e);
+                }
+            }
+        }
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package cr;
+
+import cr.util.Config;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Limits how many classpath variants run at once when tests are executed in parallel.
+ *
+ * <p> A variant is the class-level {@link Classpath} of a test class or a method-level {@link Classpath}, each one
+ * costs a class loader and its metaspace. A test of a variant that is already running joins it right away, a test of a
+ * new variant waits while {@code -Dclasspath-replacer.parallel.max-variants} variants are running, so the tests of the
+ * running variants go first while their loaders are warm.
+ *
+ * <p> Waiting is done by {@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker)}, so the pool of the JUnit
+ * parallel execution may compensate for blocked workers.
+ *
+ * @author Freeman
+ */
+final class VariantScheduler {
+
+    static final String MAX_VARIANTS_PROPERTY = Config.PREFIX + "parallel.max-variants";
+
+    /**
+     * Variant -> running tests, guarded by itself.
+     */
+    private static final Map<Object, Integer> running = new HashMap<>();
+
+    private VariantScheduler() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Enter the variant, wait if too many other variants are running.
+     *
+     * @param variant variant key, compared by {@link Object#equals(Object)}
+     * @return the permit, must be closed when the test is finished
+     * @throws InterruptedException if interrupted while waiting
+     */
+    static Permit enter(Object variant) throws InterruptedException {
+        Blocker blocker = new Blocker(variant);
+        if (!blocker.isReleasable()) {
+            ForkJoinPool.managedBlock(blocker);
+        }
+        return new Permit(variant);
+    }
+
+    /**
+     * @return number of running variants
+     */
+    static int runningVariants() {
+        synchronized (running) {
+            return running.size();
+        }
+    }
+
+    /**
+     * Must hold the lock of {@link #running}.
+     */
+    private static boolean tryEnter(Object variant) {
+        Integer count = running.get(variant);
+        if (count == null) {
+            int max = Config.getInt(MAX_VARIANTS_PROPERTY, 0);
+            if (max > 0 && running.size() >= max) {
+                return false;
+            }
+            count = 0;
+        }
+        running.put(variant, count + 1);
+        return true;
+    }
+
+    private static final class Blocker implements ForkJoinPool.ManagedBlocker {
+        private final Object variant;
+        private boolean entered;
+
+        Blocker(Object variant) {
+            this.variant = variant;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            synchronized (running) {
+                while (!entered) {
+                    entered = tryEnter(variant);
+                    if (!entered) {
+                        running.wait();
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            if (!entered) {
+                synchronized (running) {
+                    entered = tryEnter(variant);
+                }
+            }
+            return entered;
+        }
+    }
+
+    /**
+     * A running test of a variant.
+     */
+    static final class Permit implements AutoCloseable {
+        private final Object variant;
+        private boolean closed;
+
+        private Permit(Object variant) {
+            this.variant = variant;
+        }
+
+        @Override
+        public void close() {
+            synchronized (running) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                int count = running.get(variant) - 1;
+                if (count > 0) {
+                    running.put(variant, count);
+                } else {
+                    running.remove(variant);
+                    running.notifyAll();
+                }
+            }
+        }
+    }
+}
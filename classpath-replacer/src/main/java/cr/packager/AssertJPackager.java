@@ -8,4 +8,9 @@ public class AssertJPackager implements Packager {
     public String[] internalPackages() {
         return new String[] {"org.assertj"};
     }
+
+    @Override
+    public String requiredClass() {
+        return "org.assertj.core.api.Assertions";
+    }
 }
@@ -8,4 +8,9 @@ public class HamcrestPackager implements Packager {
     public String[] internalPackages() {
         return new String[] {"org.hamcrest"};
     }
+
+    @Override
+    public String requiredClass() {
+        return "org.hamcrest.Matcher";
+    }
 }
@@ -10,4 +10,9 @@ public class Junit5Packager implements Packager {
             "org.junit",
         };
     }
+
+    @Override
+    public String requiredClass() {
+        return "org.junit.jupiter.api.Test";
+    }
 }
@@ -8,4 +8,9 @@ public class MockitoPackager implements Packager {
     public String[] internalPackages() {
         return new String[] {"org.mockito"};
     }
+
+    @Override
+    public String requiredClass() {
+        return "org.mockito.Mockito";
+    }
 }
@@ -8,4 +8,9 @@ public class Opentest4JPackager implements Packager {
     public String[] internalPackages() {
         return new String[] {"org.opentest4j"};
     }
+
+    @Override
+    public String requiredClass() {
+        return "org.opentest4j.AssertionFailedError";
+    }
 }
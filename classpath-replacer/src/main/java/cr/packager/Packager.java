@@ -1,6 +1,12 @@
 package cr.packager;
 
 /**
+ * Packages of a test framework, loaded by the application class loader instead of the modified class loader, so the
+ * framework is loaded once and shared by all modified class loaders.
+ *
+ * <p> Implementations are discovered by {@link java.util.ServiceLoader}, register them in
+ * {@code META-INF/services/cr.packager.Packager}.
+ *
  * @author Freeman
  */
 public interface Packager {
@@ -11,4 +17,15 @@ public interface Packager {
      * @return the internal packages
      */
     String[] internalPackages();
+
+    /**
+     * Returns the class whose presence enables this packager, e.g. the main class of the framework.
+     *
+     * <p> The class is looked up without being initialized.
+     *
+     * @return the class name, or null if this packager is always enabled
+     */
+    default String requiredClass() {
+        return null;
+    }
 }
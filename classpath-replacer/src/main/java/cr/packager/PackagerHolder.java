@@ -3,30 +3,22 @@ package cr.packager;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.ServiceLoader;
 
 /**
+ * Holds the enabled {@link Packager}s, discovered by {@link ServiceLoader}.
+ *
+ * <p> A packager is enabled if its {@link Packager#requiredClass()} is present, the class is looked up without being
+ * initialized.
+ *
  * @author Freeman
  */
 public final class PackagerHolder {
 
-    private static final List<Packager> packagers = new ArrayList<>();
+    private static final List<Packager> packagers = load();
 
-    static {
-        if (isPresent("org.junit.jupiter.api.Test")) {
-            packagers.add(new Junit5Packager());
-        }
-        if (isPresent("org.hamcrest.Matcher")) {
-            packagers.add(new HamcrestPackager());
-        }
-        if (isPresent("org.opentest4j.AssertionFailedError")) {
-            packagers.add(new Opentest4JPackager());
-        }
-        if (isPresent("org.assertj.core.api.Assertions")) {
-            packagers.add(new AssertJPackager());
-        }
-        if (isPresent("org.mockito.Mockito")) {
-            packagers.add(new MockitoPackager());
-        }
+    private PackagerHolder() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
     }
 
     /**
@@ -35,14 +27,26 @@ public final class PackagerHolder {
      * @return all packagers
      */
     public static List<Packager> getPackagers() {
-        return Collections.unmodifiableList(packagers);
+        return packagers;
+    }
+
+    private static List<Packager> load() {
+        ClassLoader classLoader = PackagerHolder.class.getClassLoader();
+        List<Packager> result = new ArrayList<>();
+        for (Packager packager : ServiceLoader.load(Packager.class, classLoader)) {
+            String requiredClass = packager.requiredClass();
+            if (requiredClass == null || isPresent(requiredClass, classLoader)) {
+                result.add(packager);
+            }
+        }
+        return Collections.unmodifiableList(result);
     }
 
-    private static boolean isPresent(String className) {
+    private static boolean isPresent(String className, ClassLoader classLoader) {
         try {
-            Class.forName(className);
+            Class.forName(className, false, classLoader);
             return true;
-        } catch (ClassNotFoundException ignored) {
+        } catch (ClassNotFoundException | LinkageError ignored) {
             return false;
         }
     }
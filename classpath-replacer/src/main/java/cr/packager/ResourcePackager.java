@@ -0,0 +1,52 @@
+package cr.packager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Internal packages declared by {@code META-INF/classpath-replacer.packages} files on the classpath, one package or
+ * class name prefix per line, lines starting with {@code #} are comments.
+ *
+ * <p> Lets a test support library (e.g. shared fixtures) or a project mark its own heavy frameworks as internal,
+ * without implementing a {@link Packager}.
+ *
+ * @author Freeman
+ */
+public class ResourcePackager implements Packager {
+
+    static final String RESOURCE = "META-INF/classpath-replacer.packages";
+
+    @Override
+    public String[] internalPackages() {
+        List<String> packages = new ArrayList<>();
+        try {
+            Enumeration<URL> resources = ResourcePackager.class.getClassLoader().getResources(RESOURCE);
+            while (resources.hasMoreElements()) {
+                read(resources.nextElement(), packages);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return packages.toArray(new String[0]);
+    }
+
+    private static void read(URL url, List<String> packages) throws IOException {
+        try (BufferedReader reader =
+                new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    packages.add(line);
+                }
+            }
+        }
+    }
+}
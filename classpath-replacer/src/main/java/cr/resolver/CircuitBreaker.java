@@ -0,0 +1,87 @@
+package cr.resolver;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker of remote resolution.
+ *
+ * <p> After {@code failureThreshold} consecutive failures, the breaker opens and calls fail fast for
+ * {@code openDuration}. Then one trial call is allowed, the breaker closes if the trial succeeds, otherwise it opens
+ * again.
+ *
+ * @author Freeman
+ */
+final class CircuitBreaker {
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean open;
+    private boolean trialInFlight;
+    private RuntimeException lastFailure;
+
+    /**
+     * @param failureThreshold consecutive failures to open the breaker, the breaker is disabled if not positive
+     * @param openMillis       how long the breaker stays open
+     * @param clock            nano time source
+     */
+    CircuitBreaker(int failureThreshold, long openMillis, LongSupplier clock) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.clock = clock;
+    }
+
+    /**
+     * Acquire permission for a call.
+     *
+     * @throws IllegalStateException if the breaker is open
+     */
+    synchronized void acquire() {
+        if (!open) {
+            return;
+        }
+        if (!trialInFlight && clock.getAsLong() - openedAt >= openNanos) {
+            trialInFlight = true;
+            return;
+        }
+        throw new IllegalStateException(
+                "Remote resolution is short-circuited after " + consecutiveFailures
+                        + " consecutive failures, retry in "
+                        + Math.max(0, TimeUnit.NANOSECONDS.toMillis(openNanos - (clock.getAsLong() - openedAt)))
+                        + "ms",
+                lastFailure);
+    }
+
+    /**
+     * Record a call that reached the remote, including calls failed because of the request itself, e.g. not found.
+     */
+    synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        open = false;
+        trialInFlight = false;
+        lastFailure = null;
+    }
+
+    /**
+     * Record a failure caused by the remote being unavailable.
+     *
+     * @param failure the failure
+     */
+    synchronized void onFailure(RuntimeException failure) {
+        consecutiveFailures++;
+        lastFailure = failure;
+        trialInFlight = false;
+        if (failureThreshold > 0 && (open || consecutiveFailures >= failureThreshold)) {
+            open = true;
+            openedAt = clock.getAsLong();
+        }
+    }
+
+    synchronized boolean isOpen() {
+        return open;
+    }
+}
@@ -0,0 +1,98 @@
+package cr.resolver;
+
+import cr.util.Config;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chain of {@link Resolver}s, tries the resolvers in {@link Resolver#order()} until one of them resolves the
+ * coordinates.
+ *
+ * <p> A resolver that misses or fails falls back to the next one, if all resolvers fail, the last failure is thrown.
+ *
+ * <p> Hits, misses, failures and latency are recorded per resolver, see {@link #getStats()}. Set
+ * {@code -Dclasspath-replacer.resolver.report=true} to print which resolver serves each resolution.
+ *
+ * @author Freeman
+ */
+public final class CompositeResolver implements Resolver {
+
+    static final String REPORT_PROPERTY = Config.PREFIX + "resolver.report";
+
+    private final List<Resolver> resolvers;
+    private final List<ResolverStats> stats;
+
+    public CompositeResolver(List<? extends Resolver> resolvers) {
+        List<Resolver> sorted = new ArrayList<>(resolvers);
+        // stable, resolvers with the same order keep the registration order
+        sorted.sort(Comparator.comparingInt(Resolver::order));
+        List<ResolverStats> list = new ArrayList<>(sorted.size());
+        for (Resolver resolver : sorted) {
+            list.add(new ResolverStats(resolver.name()));
+        }
+        this.resolvers = Collections.unmodifiableList(sorted);
+        this.stats = Collections.unmodifiableList(list);
+    }
+
+    @Override
+    public Optional<List<URL>> resolve(List<String> coordinates) {
+        RuntimeException failure = null;
+        for (int i = 0; i < resolvers.size(); i++) {
+            Resolver resolver = resolvers.get(i);
+            long start = System.nanoTime();
+            Optional<List<URL>> result;
+            try {
+                result = resolver.resolve(coordinates);
+            } catch (RuntimeException e) {
+                stats.get(i).record(ResolverStats.Outcome.FAILURE, System.nanoTime() - start);
+                if (failure != null) {
+                    e.addSuppressed(failure);
+                }
+                failure = e;
+                continue;
+            }
+            long elapsed = System.nanoTime() - start;
+            if (result.isPresent()) {
+                stats.get(i).record(ResolverStats.Outcome.HIT, elapsed);
+                if (Config.getBoolean(REPORT_PROPERTY, false)) {
+                    System.err.println("[classpath-replacer] " + String.join(" ", coordinates) + " resolved by "
+                            + resolver.name() + " in " + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms");
+                }
+                return result;
+            }
+            stats.get(i).record(ResolverStats.Outcome.MISS, elapsed);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public String name() {
+        return "composite";
+    }
+
+    /**
+     * Get the resolvers of this chain, in the order they are tried.
+     *
+     * @return the resolvers
+     */
+    public List<Resolver> getResolvers() {
+        return resolvers;
+    }
+
+    /**
+     * Get the statistics of each resolver, in the same order as {@link #getResolvers()}.
+     *
+     * @return the statistics
+     */
+    public List<ResolverStats> getStats() {
+        return stats;
+    }
+}
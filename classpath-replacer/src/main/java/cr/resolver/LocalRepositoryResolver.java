@@ -0,0 +1,574 @@
+package cr.resolver;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves Maven coordinates from local caches only, without starting the Maven resolver.
+ *
+ * <p> Two kinds of local caches are supported:
+ * <ul>
+ *     <li>Maven local repository, like {@code ~/.m2/repository/com/google/code/gson/gson/2.8.9/gson-2.8.9.jar}</li>
+ *     <li>Gradle module cache, like {@code ~/.gradle/caches/modules-2/files-2.1/com.google.code.gson/gson/2.8.9/<sha1>/gson-2.8.9.jar}</li>
+ * </ul>
+ *
+ * <p> Transitive dependencies are collected from the pom files in the caches, following Maven rules:
+ * parent inheritance, property interpolation, dependency management (including imported boms),
+ * compile/runtime scopes, optional dependencies, exclusions, and nearest-wins version mediation.
+ *
+ * <p> Resolution misses when anything can't be handled exactly, e.g. missing pom or jar, version ranges, snapshots,
+ * relocations, profiles activated by os or file. The caller should fall back to the Maven resolver then.
+ *
+ * <p> Profiles are activated by jdk and system properties of the current JVM, or by {@code activeByDefault}.
+ *
+ * <p> Parsed pom files are indexed in memory and re-parsed only when the file changes.
+ *
+ * @author Freeman
+ */
+public final class LocalRepositoryResolver implements Resolver {
+
+    /**
+     * After custom resolvers, before the Maven resolver.
+     */
+    static final int ORDER = 1000;
+
+    private static final Set<String> TRANSITIVE_SCOPES = new HashSet<>(Arrays.asList("compile", "runtime"));
+    private static final Pattern PROPERTY_PATTERN = Pattern.compile("\\$\\{([^}]+)}");
+    private static final Pattern JDK_RANGE_PATTERN = Pattern.compile("([\\[(])([^,\\])]*),([^\\])]*)([\\])])");
+    private static final int MAX_DEPTH = 32;
+
+    private final List<File> mavenRepositories;
+    private final List<File> gradleCaches;
+
+    /**
+     * pom path -> parsed pom
+     */
+    private final ConcurrentMap<String, IndexedPom> poms = new ConcurrentHashMap<>();
+
+    public LocalRepositoryResolver(List<File> mavenRepositories, List<File> gradleCaches) {
+        this.mavenRepositories = new ArrayList<>(mavenRepositories);
+        this.gradleCaches = new ArrayList<>(gradleCaches);
+    }
+
+    /**
+     * Get the shared {@link LocalRepositoryResolver} of the default Maven local repository and Gradle module cache.
+     *
+     * @return the shared {@link LocalRepositoryResolver}
+     */
+    public static LocalRepositoryResolver getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Resolve coordinates as one dependency graph.
+     *
+     * @param coordinates Maven coordinates of the form groupId:artifactId:version
+     * @return resolved jars, or empty if the coordinates can't be resolved from local caches
+     */
+    @Override
+    public Optional<List<URL>> resolve(List<String> coordinates) {
+        try {
+            return Optional.of(doResolve(coordinates));
+        } catch (Miss e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public int order() {
+        return ORDER;
+    }
+
+    @Override
+    public String name() {
+        return "local-repository";
+    }
+
+    private List<URL> doResolve(List<String> coordinates) throws Miss {
+        Deque<Node> queue = new ArrayDeque<>();
+        for (String coordinate : coordinates) {
+            String[] gav = coordinate.split(":");
+            if (gav.length != 3) {
+                throw new Miss("Unsupported coordinate: " + coordinate);
+            }
+            Pom.Dependency root =
+                    new Pom.Dependency(gav[0], gav[1], gav[2], null, null, null, null, Collections.emptyList());
+            queue.add(new Node(root, Collections.emptySet()));
+        }
+
+        // breadth first, so the nearest wins, then the first declared wins
+        Set<String> selected = new HashSet<>();
+        List<URL> result = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            Pom.Dependency dependency = node.dependency;
+            String extension = extension(dependency.type);
+            String classifier = classifier(dependency);
+            if (!selected.add(dependency.groupId + ":" + dependency.artifactId + ":" + extension + ":" + classifier)) {
+                continue;
+            }
+            checkVersion(dependency.version);
+
+            Model model = model(dependency.groupId, dependency.artifactId, dependency.version, 0);
+            if (!"pom".equals(extension)) {
+                File file = find(dependency.groupId, dependency.artifactId, dependency.version, classifier, extension);
+                if (file == null) {
+                    throw new Miss("Artifact not found: " + dependency.managementKey() + ":" + dependency.version);
+                }
+                result.add(toURL(file));
+            }
+
+            // like the Maven resolver, only the root could manage transitive dependencies, and there is no root here,
+            // so dependency management of a pom only applies to its own dependencies (already done in the model)
+            for (Pom.Dependency child : model.dependencies) {
+                if ("true".equals(child.optional)) {
+                    continue;
+                }
+                if (!TRANSITIVE_SCOPES.contains(child.scope != null ? child.scope : "compile")
+                        || isExcluded(child, node.exclusions)) {
+                    continue;
+                }
+                Set<String> exclusions = node.exclusions;
+                if (!child.exclusions.isEmpty()) {
+                    exclusions = new HashSet<>(node.exclusions);
+                    exclusions.addAll(child.exclusions);
+                }
+                queue.add(new Node(child, exclusions));
+            }
+        }
+        return result;
+    }
+
+    private Model model(String groupId, String artifactId, String version, int depth) throws Miss {
+        if (depth > MAX_DEPTH) {
+            throw new Miss("Too deep pom hierarchy: " + groupId + ":" + artifactId + ":" + version);
+        }
+
+        // child first
+        List<Pom> hierarchy = new ArrayList<>();
+        Pom pom = pom(groupId, artifactId, version);
+        hierarchy.add(pom);
+        while (pom.parentGroupId != null) {
+            if (hierarchy.size() > MAX_DEPTH) {
+                throw new Miss("Too deep pom hierarchy: " + groupId + ":" + artifactId + ":" + version);
+            }
+            pom = pom(pom.parentGroupId, pom.parentArtifactId, pom.parentVersion);
+            hierarchy.add(pom);
+        }
+        List<List<Pom.Profile>> activeProfiles = new ArrayList<>(hierarchy.size());
+        for (Pom p : hierarchy) {
+            if (p.relocated) {
+                throw new Miss("Relocated pom: " + groupId + ":" + artifactId + ":" + version);
+            }
+            activeProfiles.add(activeProfiles(p));
+        }
+
+        Pom project = hierarchy.get(0);
+        Map<String, String> properties = new HashMap<>();
+        for (int i = hierarchy.size() - 1; i >= 0; i--) {
+            properties.putAll(hierarchy.get(i).properties);
+            for (Pom.Profile profile : activeProfiles.get(i)) {
+                properties.putAll(profile.properties);
+            }
+        }
+        String projectGroupId = project.groupId != null ? project.groupId : project.parentGroupId;
+        String projectVersion = project.version != null ? project.version : project.parentVersion;
+        for (String prefix : new String[] {"project.", "pom.", ""}) {
+            properties.put(prefix + "groupId", projectGroupId);
+            properties.put(prefix + "artifactId", project.artifactId);
+            properties.put(prefix + "version", projectVersion);
+        }
+        if (project.parentGroupId != null) {
+            properties.put("project.parent.groupId", project.parentGroupId);
+            properties.put("project.parent.artifactId", project.parentArtifactId);
+            properties.put("project.parent.version", project.parentVersion);
+        }
+
+        // inherited values are interpolated in the context of the child, child wins
+        Map<String, Pom.Dependency> dependencyManagement = new LinkedHashMap<>();
+        List<Pom.Dependency> imports = new ArrayList<>();
+        Map<String, Pom.Dependency> dependencies = new LinkedHashMap<>();
+        for (int i = hierarchy.size() - 1; i >= 0; i--) {
+            List<Pom.Dependency> declaredManagement = new ArrayList<>(hierarchy.get(i).dependencyManagement);
+            List<Pom.Dependency> declaredDependencies = new ArrayList<>(hierarchy.get(i).dependencies);
+            for (Pom.Profile profile : activeProfiles.get(i)) {
+                declaredManagement.addAll(profile.dependencyManagement);
+                declaredDependencies.addAll(profile.dependencies);
+            }
+            List<Pom.Dependency> declaredImports = new ArrayList<>();
+            for (Pom.Dependency managed : declaredManagement) {
+                managed = managed.interpolate(value -> interpolate(value, properties));
+                if ("import".equals(managed.scope) && "pom".equals(managed.type)) {
+                    declaredImports.add(managed);
+                } else {
+                    dependencyManagement.put(managed.managementKey(), managed);
+                }
+            }
+            // imports of the child come first
+            imports.addAll(0, declaredImports);
+            for (Pom.Dependency declared : declaredDependencies) {
+                declared = declared.interpolate(value -> interpolate(value, properties));
+                dependencies.put(declared.managementKey(), declared);
+            }
+        }
+        for (Pom.Dependency bom : imports) {
+            checkResolved(bom);
+            checkVersion(bom.version);
+            for (Pom.Dependency managed : model(bom.groupId, bom.artifactId, bom.version, depth + 1)
+                    .dependencyManagement
+                    .values()) {
+                dependencyManagement.putIfAbsent(managed.managementKey(), managed);
+            }
+        }
+
+        List<Pom.Dependency> managedDependencies = new ArrayList<>(dependencies.size());
+        for (Pom.Dependency declared : dependencies.values()) {
+            Pom.Dependency managed = dependencyManagement.get(declared.managementKey());
+            if (managed != null) {
+                declared = declared.withManagement(managed);
+            }
+            if (TRANSITIVE_SCOPES.contains(declared.scope != null ? declared.scope : "compile")) {
+                checkResolved(declared);
+            }
+            managedDependencies.add(declared);
+        }
+        return new Model(dependencyManagement, managedDependencies);
+    }
+
+    /**
+     * Evaluate profile activation the way Maven does, activeByDefault profiles are only active when no other profile
+     * of the same pom is triggered.
+     */
+    private static List<Pom.Profile> activeProfiles(Pom pom) throws Miss {
+        if (pom.profiles.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Pom.Profile> triggered = new ArrayList<>();
+        List<Pom.Profile> byDefault = new ArrayList<>();
+        boolean anyTriggered = false;
+        boolean unknown = false;
+        for (Pom.Profile profile : pom.profiles) {
+            if (profile.unsupportedActivation) {
+                if (profile.isEffective()) {
+                    throw new Miss("Unsupported profile activation: " + pom.artifactId);
+                }
+                unknown = true;
+            } else if (profile.hasTrigger() && isTriggered(profile)) {
+                anyTriggered = true;
+                if (profile.isEffective()) {
+                    triggered.add(profile);
+                }
+            } else if (profile.activeByDefault && profile.isEffective()) {
+                byDefault.add(profile);
+            }
+        }
+        if (anyTriggered || byDefault.isEmpty()) {
+            return triggered;
+        }
+        if (unknown) {
+            throw new Miss("Ambiguous default profile: " + pom.artifactId);
+        }
+        return byDefault;
+    }
+
+    private static boolean isTriggered(Pom.Profile profile) {
+        if (profile.jdk != null && !matchesJdk(profile.jdk, System.getProperty("java.version", ""))) {
+            return false;
+        }
+        if (profile.propertyName != null) {
+            if (profile.propertyName.startsWith("!")) {
+                return System.getProperty(profile.propertyName.substring(1)) == null;
+            }
+            String value = System.getProperty(profile.propertyName);
+            if (profile.propertyValue == null) {
+                return value != null;
+            }
+            if (profile.propertyValue.startsWith("!")) {
+                return !profile.propertyValue.substring(1).equals(value);
+            }
+            return profile.propertyValue.equals(value);
+        }
+        return true;
+    }
+
+    static boolean matchesJdk(String jdk, String javaVersion) {
+        if (jdk.startsWith("!")) {
+            return !matchesJdk(jdk.substring(1), javaVersion);
+        }
+        if (!jdk.startsWith("[") && !jdk.startsWith("(")) {
+            return javaVersion.startsWith(jdk);
+        }
+        // version ranges, like [1.8,11),[17,)
+        Matcher matcher = JDK_RANGE_PATTERN.matcher(jdk);
+        while (matcher.find()) {
+            String lower = matcher.group(2).trim();
+            String upper = matcher.group(3).trim();
+            boolean aboveLower = lower.isEmpty()
+                    || compareVersions(javaVersion, lower) > 0
+                    || ("[".equals(matcher.group(1)) && compareVersions(javaVersion, lower) == 0);
+            boolean belowUpper = upper.isEmpty()
+                    || compareVersions(javaVersion, upper) < 0
+                    || ("]".equals(matcher.group(4)) && compareVersions(javaVersion, upper) == 0);
+            if (aboveLower && belowUpper) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int compareVersions(String left, String right) {
+        String[] l = left.split("[._\\-]");
+        String[] r = right.split("[._\\-]");
+        for (int i = 0; i < Math.max(l.length, r.length); i++) {
+            int compared = Integer.compare(number(l, i), number(r, i));
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return 0;
+    }
+
+    private static int number(String[] segments, int index) {
+        if (index >= segments.length) {
+            return 0;
+        }
+        String digits = segments[index].replaceAll("\\D.*", "");
+        return digits.isEmpty() ? 0 : Integer.parseInt(digits);
+    }
+
+    private Pom pom(String groupId, String artifactId, String version) throws Miss {
+        if (groupId == null || artifactId == null || version == null) {
+            throw new Miss("Incomplete coordinate: " + groupId + ":" + artifactId + ":" + version);
+        }
+        checkVersion(version);
+        File file = find(groupId, artifactId, version, "", "pom");
+        if (file == null) {
+            throw new Miss("Pom not found: " + groupId + ":" + artifactId + ":" + version);
+        }
+        long lastModified = file.lastModified();
+        long length = file.length();
+        IndexedPom indexed = poms.get(file.getPath());
+        if (indexed != null && indexed.lastModified == lastModified && indexed.length == length) {
+            return indexed.pom;
+        }
+        try {
+            Pom pom = Pom.parse(file);
+            poms.put(file.getPath(), new IndexedPom(pom, lastModified, length));
+            return pom;
+        } catch (IOException e) {
+            throw new Miss("Failed to parse pom: " + file);
+        }
+    }
+
+    private File find(String groupId, String artifactId, String version, String classifier, String extension) {
+        String fileName = artifactId + "-" + version + (classifier.isEmpty() ? "" : "-" + classifier) + "." + extension;
+        for (File repository : mavenRepositories) {
+            File file = new File(
+                    repository,
+                    groupId.replace('.', File.separatorChar)
+                            + File.separator
+                            + artifactId
+                            + File.separator
+                            + version
+                            + File.separator
+                            + fileName);
+            if (file.isFile()) {
+                return file;
+            }
+        }
+        for (File cache : gradleCaches) {
+            File[] hashes =
+                    new File(cache, groupId + File.separator + artifactId + File.separator + version).listFiles();
+            if (hashes == null) {
+                continue;
+            }
+            for (File hash : hashes) {
+                File file = new File(hash, fileName);
+                if (file.isFile()) {
+                    return file;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String interpolate(String value, Map<String, String> properties) {
+        if (value == null || !value.contains("${")) {
+            return value;
+        }
+        String result = value;
+        for (int i = 0; i < 10 && result.contains("${"); i++) {
+            Matcher matcher = PROPERTY_PATTERN.matcher(result);
+            StringBuffer sb = new StringBuffer();
+            while (matcher.find()) {
+                String name = matcher.group(1);
+                String replacement = properties.get(name);
+                if (replacement == null && !name.startsWith("env.")) {
+                    replacement = System.getProperty(name);
+                }
+                matcher.appendReplacement(
+                        sb, Matcher.quoteReplacement(replacement != null ? replacement : "${" + name + "}"));
+            }
+            matcher.appendTail(sb);
+            if (sb.toString().equals(result)) {
+                break;
+            }
+            result = sb.toString();
+        }
+        return result;
+    }
+
+    private static void checkResolved(Pom.Dependency dependency) throws Miss {
+        for (String value : new String[] {
+            dependency.groupId, dependency.artifactId, dependency.version, dependency.type, dependency.classifier
+        }) {
+            if (value != null && value.contains("${")) {
+                throw new Miss("Unresolved property: " + value);
+            }
+        }
+        if (dependency.version == null) {
+            throw new Miss("Missing version: " + dependency.managementKey());
+        }
+    }
+
+    private static void checkVersion(String version) throws Miss {
+        if (version == null
+                || version.endsWith("SNAPSHOT")
+                || "LATEST".equals(version)
+                || "RELEASE".equals(version)
+                || version.indexOf('[') >= 0
+                || version.indexOf('(') >= 0
+                || version.indexOf(',') >= 0) {
+            throw new Miss("Unsupported version: " + version);
+        }
+    }
+
+    private static boolean isExcluded(Pom.Dependency dependency, Set<String> exclusions) {
+        if (exclusions.isEmpty()) {
+            return false;
+        }
+        return exclusions.contains(dependency.groupId + ":" + dependency.artifactId)
+                || exclusions.contains(dependency.groupId + ":*")
+                || exclusions.contains("*:" + dependency.artifactId)
+                || exclusions.contains("*:*");
+    }
+
+    private static String extension(String type) throws Miss {
+        if (type == null) {
+            return "jar";
+        }
+        switch (type) {
+            case "jar":
+            case "test-jar":
+            case "bundle":
+            case "maven-plugin":
+            case "ejb":
+                return "jar";
+            case "pom":
+                return "pom";
+            default:
+                throw new Miss("Unsupported type: " + type);
+        }
+    }
+
+    private static String classifier(Pom.Dependency dependency) {
+        if (dependency.classifier != null) {
+            return dependency.classifier;
+        }
+        return "test-jar".equals(dependency.type) ? "tests" : "";
+    }
+
+    private static URL toURL(File file) throws Miss {
+        try {
+            return file.toURI().toURL();
+        } catch (MalformedURLException e) {
+            throw new Miss("Invalid file: " + file);
+        }
+    }
+
+    private static final class Node {
+        private final Pom.Dependency dependency;
+        private final Set<String> exclusions;
+
+        private Node(Pom.Dependency dependency, Set<String> exclusions) {
+            this.dependency = dependency;
+            this.exclusions = exclusions;
+        }
+    }
+
+    /**
+     * Effective model of a pom, only contains the parts needed by dependency resolution.
+     */
+    private static final class Model {
+        private final Map<String, Pom.Dependency> dependencyManagement;
+        private final List<Pom.Dependency> dependencies;
+
+        private Model(Map<String, Pom.Dependency> dependencyManagement, List<Pom.Dependency> dependencies) {
+            this.dependencyManagement = dependencyManagement;
+            this.dependencies = dependencies;
+        }
+    }
+
+    private static final class IndexedPom {
+        private final Pom pom;
+        private final long lastModified;
+        private final long length;
+
+        private IndexedPom(Pom pom, long lastModified, long length) {
+            this.pom = pom;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Local caches can't serve the resolution.
+     */
+    private static final class Miss extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private Miss(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private static final class Holder {
+        private static final LocalRepositoryResolver INSTANCE = create();
+
+        private static LocalRepositoryResolver create() {
+            String userHome = System.getProperty("user.home");
+            String mavenRepository = System.getProperty("maven.repo.local");
+            File maven = mavenRepository != null
+                    ? new File(mavenRepository)
+                    : new File(userHome, ".m2" + File.separator + "repository");
+
+            String gradleUserHome = System.getProperty("gradle.user.home");
+            if (gradleUserHome == null) {
+                gradleUserHome = System.getenv("GRADLE_USER_HOME");
+            }
+            File gradle = new File(
+                    gradleUserHome != null ? new File(gradleUserHome) : new File(userHome, ".gradle"),
+                    "caches" + File.separator + "modules-2" + File.separator + "files-2.1");
+
+            return new LocalRepositoryResolver(Collections.singletonList(maven), Collections.singletonList(gradle));
+        }
+    }
+}
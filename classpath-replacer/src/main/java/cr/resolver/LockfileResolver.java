@@ -0,0 +1,175 @@
+package cr.resolver;
+
+import cr.util.Config;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Resolves coordinates from a lockfile generated at build time, e.g. by the classpath-replacer Gradle plugin.
+ *
+ * <p> Lockfile format:
+ * <pre>{@code
+ * # classpath-replacer lockfile v1
+ * [com.google.code.gson:gson:2.8.9]
+ * <sha256>\t/path/to/gson-2.8.9.jar
+ * }</pre>
+ *
+ * <p> Each section maps the coordinates of one dependency graph (joined by a space) to the ordered list of resolved
+ * jars. Coordinates not in the lockfile, or whose jars no longer exist, miss and fall back to the next resolver.
+ *
+ * <p> Set {@code -Dclasspath-replacer.lockfile.verify=true} to verify the checksums of the jars.
+ *
+ * @author Freeman
+ */
+public final class LockfileResolver implements Resolver {
+
+    /**
+     * Path of the lockfile.
+     */
+    public static final String LOCKFILE_PROPERTY = Config.PREFIX + "lockfile";
+
+    static final String VERIFY_PROPERTY = Config.PREFIX + "lockfile.verify";
+
+    /**
+     * Before all other resolvers, the lockfile is generated by the build.
+     */
+    static final int ORDER = -1000;
+
+    static final String HEADER = "# classpath-replacer lockfile v1";
+
+    private final Map<String, List<Entry>> entries;
+    private final boolean verify;
+
+    LockfileResolver(Map<String, List<Entry>> entries, boolean verify) {
+        this.entries = entries;
+        this.verify = verify;
+    }
+
+    /**
+     * Load the lockfile.
+     *
+     * @param lockfile lockfile path
+     * @param verify   whether to verify the checksums of the jars
+     * @return the resolver
+     * @throws UncheckedIOException if the lockfile can't be read
+     * @throws IllegalArgumentException if the lockfile is malformed
+     */
+    public static LockfileResolver load(Path lockfile, boolean verify) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(lockfile, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read lockfile: " + lockfile, e);
+        }
+        if (lines.isEmpty() || !HEADER.equals(lines.get(0))) {
+            throw new IllegalArgumentException("Unsupported lockfile: " + lockfile);
+        }
+        Map<String, List<Entry>> entries = new HashMap<>();
+        List<Entry> current = null;
+        for (int i = 1; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.startsWith("[") && line.endsWith("]")) {
+                current = new ArrayList<>();
+                entries.put(line.substring(1, line.length() - 1), current);
+                continue;
+            }
+            int tab = line.indexOf('\t');
+            if (current == null || tab < 0) {
+                throw new IllegalArgumentException("Malformed lockfile " + lockfile + " at line " + (i + 1));
+            }
+            current.add(new Entry(line.substring(0, tab), new File(line.substring(tab + 1))));
+        }
+        return new LockfileResolver(entries, verify);
+    }
+
+    /**
+     * Get the {@link LockfileResolver} of {@code -Dclasspath-replacer.lockfile}.
+     *
+     * @return the resolver, or null if no lockfile is configured
+     */
+    static LockfileResolver fromConfig() {
+        String lockfile = Config.get(LOCKFILE_PROPERTY);
+        if (lockfile == null) {
+            return null;
+        }
+        return load(Paths.get(lockfile), Config.getBoolean(VERIFY_PROPERTY, false));
+    }
+
+    @Override
+    public Optional<List<URL>> resolve(List<String> coordinates) {
+        List<Entry> locked = entries.get(String.join(" ", coordinates));
+        if (locked == null) {
+            return Optional.empty();
+        }
+        List<URL> result = new ArrayList<>(locked.size());
+        for (Entry entry : locked) {
+            if (!entry.file.isFile() || (verify && !entry.sha256.equals(sha256(entry.file)))) {
+                return Optional.empty();
+            }
+            try {
+                result.add(entry.file.toURI().toURL());
+            } catch (MalformedURLException e) {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(Collections.unmodifiableList(result));
+    }
+
+    @Override
+    public int order() {
+        return ORDER;
+    }
+
+    @Override
+    public String name() {
+        return "lockfile";
+    }
+
+    static String sha256(File file) {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                digest.update(buffer, 0, n);
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (IOException e) {
+            return "";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static final class Entry {
+        private final String sha256;
+        private final File file;
+
+        Entry(String sha256, File file) {
+            this.sha256 = sha256;
+            this.file = file;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package cr.resolver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+/**
+ * Raw (not inherited, not interpolated) model of a pom file, only contains the parts needed by dependency resolution.
+ *
+ * @author Freeman
+ */
+final class Pom {
+
+    final String groupId;
+    final String artifactId;
+    final String version;
+    final String parentGroupId;
+    final String parentArtifactId;
+    final String parentVersion;
+    final Map<String, String> properties;
+    final List<Dependency> dependencyManagement;
+    final List<Dependency> dependencies;
+    final List<Profile> profiles;
+    /**
+     * Relocations are not supported, resolution must fall back to Maven.
+     */
+    final boolean relocated;
+
+    private Pom(Element project) {
+        this.groupId = text(project, "groupId");
+        this.artifactId = text(project, "artifactId");
+        this.version = text(project, "version");
+        Element parent = child(project, "parent");
+        this.parentGroupId = parent != null ? text(parent, "groupId") : null;
+        this.parentArtifactId = parent != null ? text(parent, "artifactId") : null;
+        this.parentVersion = parent != null ? text(parent, "version") : null;
+        this.properties = properties(child(project, "properties"));
+        this.dependencyManagement = dependencies(child(child(project, "dependencyManagement"), "dependencies"));
+        this.dependencies = dependencies(child(project, "dependencies"));
+        this.relocated = child(child(project, "distributionManagement"), "relocation") != null;
+        List<Profile> profileList = new ArrayList<>();
+        for (Element profile : children(child(project, "profiles"), "profile")) {
+            profileList.add(new Profile(profile));
+        }
+        this.profiles = profileList;
+    }
+
+    static Pom parse(File file) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            factory.setExpandEntityReferences(false);
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            return new Pom(builder.parse(file).getDocumentElement());
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Failed to parse pom: " + file, e);
+        }
+    }
+
+    private static Map<String, String> properties(Element properties) {
+        if (properties == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> result = new LinkedHashMap<>();
+        for (Node node = properties.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element) {
+                result.put(node.getNodeName(), node.getTextContent().trim());
+            }
+        }
+        return result;
+    }
+
+    private static List<Dependency> dependencies(Element dependencies) {
+        List<Dependency> result = new ArrayList<>();
+        for (Element dependency : children(dependencies, "dependency")) {
+            List<String> exclusions = new ArrayList<>();
+            for (Element exclusion : children(child(dependency, "exclusions"), "exclusion")) {
+                exclusions.add(text(exclusion, "groupId") + ":" + text(exclusion, "artifactId"));
+            }
+            result.add(new Dependency(
+                    text(dependency, "groupId"),
+                    text(dependency, "artifactId"),
+                    text(dependency, "version"),
+                    text(dependency, "type"),
+                    text(dependency, "classifier"),
+                    text(dependency, "scope"),
+                    text(dependency, "optional"),
+                    exclusions));
+        }
+        return result;
+    }
+
+    private static Element child(Element parent, String name) {
+        if (parent == null) {
+            return null;
+        }
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element && name.equals(node.getNodeName())) {
+                return (Element) node;
+            }
+        }
+        return null;
+    }
+
+    private static List<Element> children(Element parent, String name) {
+        if (parent == null) {
+            return Collections.emptyList();
+        }
+        List<Element> result = new ArrayList<>();
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element && name.equals(node.getNodeName())) {
+                result.add((Element) node);
+            }
+        }
+        return result;
+    }
+
+    private static String text(Element parent, String name) {
+        Element element = child(parent, name);
+        if (element == null) {
+            return null;
+        }
+        String text = element.getTextContent().trim();
+        return text.isEmpty() ? null : text;
+    }
+
+    /**
+     * Profile declared in a pom, only the parts that can change dependencies are kept.
+     */
+    static final class Profile {
+        final boolean activeByDefault;
+        /**
+         * Jdk activation, like {@code 1.8}, {@code !1.8} or {@code [11,)}.
+         */
+        final String jdk;
+        /**
+         * Property activation, like {@code foo}, {@code !foo}.
+         */
+        final String propertyName;
+        /**
+         * Property activation value, like {@code bar}, {@code !bar}.
+         */
+        final String propertyValue;
+        /**
+         * Activations that depend on the build environment (os, file) are not supported.
+         */
+        final boolean unsupportedActivation;
+
+        final Map<String, String> properties;
+        final List<Dependency> dependencyManagement;
+        final List<Dependency> dependencies;
+
+        private Profile(Element profile) {
+            Element activation = child(profile, "activation");
+            this.activeByDefault = "true".equals(text(activation, "activeByDefault"));
+            this.jdk = text(activation, "jdk");
+            Element property = child(activation, "property");
+            this.propertyName = text(property, "name");
+            this.propertyValue = text(property, "value");
+            this.unsupportedActivation = child(activation, "os") != null || child(activation, "file") != null;
+            this.properties = properties(child(profile, "properties"));
+            this.dependencyManagement = dependencies(child(child(profile, "dependencyManagement"), "dependencies"));
+            this.dependencies = dependencies(child(profile, "dependencies"));
+        }
+
+        /**
+         * Whether this profile may change the dependencies of the pom.
+         */
+        boolean isEffective() {
+            return !properties.isEmpty() || !dependencyManagement.isEmpty() || !dependencies.isEmpty();
+        }
+
+        /**
+         * Whether this profile has any activation trigger other than {@code activeByDefault}.
+         */
+        boolean hasTrigger() {
+            return jdk != null || propertyName != null || unsupportedActivation;
+        }
+    }
+
+    /**
+     * Dependency declared in a pom, all fields except groupId and artifactId are nullable.
+     */
+    static final class Dependency {
+        final String groupId;
+        final String artifactId;
+        final String version;
+        final String type;
+        final String classifier;
+        final String scope;
+        final String optional;
+        /**
+         * Exclusions in groupId:artifactId format, '*' is supported.
+         */
+        final List<String> exclusions;
+
+        Dependency(
+                String groupId,
+                String artifactId,
+                String version,
+                String type,
+                String classifier,
+                String scope,
+                String optional,
+                List<String> exclusions) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.type = type;
+            this.classifier = classifier;
+            this.scope = scope;
+            this.optional = optional;
+            this.exclusions = exclusions;
+        }
+
+        /**
+         * Key used by dependency management, groupId:artifactId:type:classifier.
+         */
+        String managementKey() {
+            return groupId + ":" + artifactId + ":" + (type != null ? type : "jar") + ":"
+                    + (classifier != null ? classifier : "");
+        }
+
+        Dependency interpolate(UnaryOperator<String> interpolator) {
+            List<String> interpolatedExclusions = new ArrayList<>(exclusions.size());
+            for (String exclusion : exclusions) {
+                interpolatedExclusions.add(interpolator.apply(exclusion));
+            }
+            return new Dependency(
+                    interpolator.apply(groupId),
+                    interpolator.apply(artifactId),
+                    interpolator.apply(version),
+                    interpolator.apply(type),
+                    interpolator.apply(classifier),
+                    interpolator.apply(scope),
+                    interpolator.apply(optional),
+                    interpolatedExclusions);
+        }
+
+        /**
+         * Apply the managed dependency the way Maven does, version, scope and optional are used if not declared,
+         * exclusions are used if none are declared.
+         */
+        Dependency withManagement(Dependency managed) {
+            return new Dependency(
+                    groupId,
+                    artifactId,
+                    version != null ? version : managed.version,
+                    type,
+                    classifier,
+                    scope != null ? scope : managed.scope,
+                    optional != null ? optional : managed.optional,
+                    exclusions.isEmpty() ? managed.exclusions : exclusions);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package cr.resolver;
+
+import cr.util.Config;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Persistent resolution cache, shared by all JVMs (e.g. Gradle test forks) on the same machine.
+ *
+ * <p> Each entry maps a resolution key (Maven coordinate) to the ordered list of resolved jars,
+ * an entry is only used when all the jars still exist with the same size and last modified time.
+ *
+ * <p> Entries are written atomically, and a file lock per entry makes sure concurrent JVMs resolve the same key only once.
+ *
+ * <p> Only remote resolutions of {@link ShrinkWrapResolver} are cached, the resolvers before it (e.g. lockfile) are
+ * specific to a build, their results must neither be overridden by the cache nor leak into other builds.
+ *
+ * <p> Configuration:
+ * <ul>
+ *     <li>{@code classpath-replacer.resolution-cache.enabled}: whether to enable the cache, default is {@code true}</li>
+ *     <li>{@code classpath-replacer.resolution-cache.dir}: cache directory, default is {@code ~/.classpath-replacer/resolution-cache}</li>
+ *     <li>{@code classpath-replacer.resolution-cache.clear}: clear the cache before first use, default is {@code false}</li>
+ * </ul>
+ *
+ * @author Freeman
+ */
+final class ResolutionCache {
+
+    static final String ENABLED_PROPERTY = Config.PREFIX + "resolution-cache.enabled";
+    static final String DIR_PROPERTY = Config.PREFIX + "resolution-cache.dir";
+    static final String CLEAR_PROPERTY = Config.PREFIX + "resolution-cache.clear";
+
+    private static final String HEADER = "# classpath-replacer resolution cache v1";
+    private static final String KEY_PREFIX = "key=";
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final Pattern DYNAMIC_VERSION_PATTERN = Pattern.compile("SNAPSHOT|:(LATEST|RELEASE)\\b|[\\[(]");
+
+    /**
+     * {@link FileChannel#lock()} can't be used by multiple threads of the same JVM, so we also need JVM level locks.
+     */
+    private static final ConcurrentMap<String, Object> jvmLocks = new ConcurrentHashMap<>();
+
+    private final Path directory;
+
+    ResolutionCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Get the shared {@link ResolutionCache}.
+     *
+     * @return the shared {@link ResolutionCache}, or null if the cache is disabled
+     */
+    static ResolutionCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Get the resolved jars of the key from cache, resolve and cache them if absent or stale.
+     *
+     * @param key      resolution key, e.g. {@code com.google.code.gson:gson:2.8.9}
+     * @param resolver function to resolve the key when cache missed
+     * @return resolved jars
+     */
+    List<URL> getOrResolve(String key, Function<String, List<URL>> resolver) {
+        if (!isCacheable(key)) {
+            return resolver.apply(key);
+        }
+        String hash = hash(key);
+        Path entry = directory.resolve(hash + ENTRY_SUFFIX);
+
+        List<URL> cached = read(entry, key);
+        if (cached != null) {
+            return cached;
+        }
+
+        synchronized (jvmLocks.computeIfAbsent(directory.resolve(hash).toString(), k -> new Object())) {
+            try {
+                Files.createDirectories(directory);
+                try (FileChannel channel = FileChannel.open(
+                                directory.resolve(hash + LOCK_SUFFIX),
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE);
+                        FileLock lock = channel.lock()) {
+                    // another JVM may have resolved it while we were waiting for the lock
+                    cached = read(entry, key);
+                    if (cached != null) {
+                        return cached;
+                    }
+                    List<URL> resolved = resolver.apply(key);
+                    try {
+                        write(entry, key, resolved);
+                    } catch (IOException ignored) {
+                        // cache is only an optimization, next resolution will try again
+                    }
+                    return resolved;
+                }
+            } catch (IOException e) {
+                // cache directory is not usable, never fail the resolution because of it
+                return resolver.apply(key);
+            }
+        }
+    }
+
+    /**
+     * Remove all cached entries.
+     */
+    void clear() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*" + ENTRY_SUFFIX)) {
+            for (Path entry : entries) {
+                Files.deleteIfExists(entry);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to clear resolution cache: " + directory, e);
+        }
+    }
+
+    private static List<URL> read(Path entry, String key) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(entry, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+        if (lines.size() < 2 || !HEADER.equals(lines.get(0)) || !(KEY_PREFIX + key).equals(lines.get(1))) {
+            return null;
+        }
+        List<URL> result = new ArrayList<>(lines.size() - 2);
+        for (int i = 2; i < lines.size(); i++) {
+            // size \t lastModified \t path
+            String[] parts = lines.get(i).split("\t", 3);
+            if (parts.length != 3) {
+                return null;
+            }
+            File file = new File(parts[2]);
+            try {
+                if (file.length() != Long.parseLong(parts[0]) || file.lastModified() != Long.parseLong(parts[1])) {
+                    return null;
+                }
+                result.add(file.toURI().toURL());
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    private void write(Path entry, String key, List<URL> urls) throws IOException {
+        List<String> lines = new ArrayList<>(urls.size() + 2);
+        lines.add(HEADER);
+        lines.add(KEY_PREFIX + key);
+        for (URL url : urls) {
+            File file;
+            try {
+                file = new File(url.toURI());
+            } catch (Exception e) {
+                // not a local file, can't be validated later
+                return;
+            }
+            if (!file.isFile()) {
+                return;
+            }
+            lines.add(file.length() + "\t" + file.lastModified() + "\t" + file.getAbsolutePath());
+        }
+        Path temp = Files.createTempFile(directory, "entry", ".tmp");
+        try {
+            Files.write(temp, lines, StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Snapshots and dynamic versions may change remotely, don't persist them.
+     */
+    private static boolean isCacheable(String key) {
+        return !DYNAMIC_VERSION_PATTERN.matcher(key).find();
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Holder {
+        private static final ResolutionCache INSTANCE = create();
+
+        private static ResolutionCache create() {
+            if (!Config.getBoolean(ENABLED_PROPERTY, true)) {
+                return null;
+            }
+            String dir = Config.get(DIR_PROPERTY);
+            Path directory = dir != null
+                    ? Paths.get(dir)
+                    : Paths.get(System.getProperty("user.home"), ".classpath-replacer", "resolution-cache");
+            ResolutionCache cache = new ResolutionCache(directory);
+            if (Config.getBoolean(CLEAR_PROPERTY, false)) {
+                cache.clear();
+            }
+            return cache;
+        }
+    }
+}
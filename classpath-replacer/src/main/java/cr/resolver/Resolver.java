@@ -0,0 +1,48 @@
+package cr.resolver;
+
+import java.net.URL;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Resolves Maven coordinates to jars.
+ *
+ * <p> Custom resolvers are discovered by {@link java.util.ServiceLoader}, register the implementation in
+ * {@code META-INF/services/cr.resolver.Resolver}. Resolvers are tried in {@link #order()}, the first resolver that
+ * returns a non-empty result wins, see {@link CompositeResolver}.
+ *
+ * @author Freeman
+ */
+public interface Resolver {
+
+    /**
+     * Order of the default Maven resolver, it's always the last one.
+     */
+    int LOWEST_ORDER = Integer.MAX_VALUE;
+
+    /**
+     * Resolve coordinates as one dependency graph, including transitive dependencies.
+     *
+     * @param coordinates Maven coordinates of the form groupId:artifactId:version
+     * @return resolved jars, or empty if this resolver can't resolve the coordinates
+     */
+    Optional<List<URL>> resolve(List<String> coordinates);
+
+    /**
+     * Resolvers with lower order are tried first.
+     *
+     * @return the order
+     */
+    default int order() {
+        return 0;
+    }
+
+    /**
+     * Name of this resolver, used in statistics.
+     *
+     * @return the name
+     */
+    default String name() {
+        return getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,61 @@
+package cr.resolver;
+
+import cr.util.Config;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Holds the {@link CompositeResolver} used to resolve {@code @Classpath} coordinates.
+ *
+ * <p> The chain consists of:
+ * <ul>
+ *     <li>{@link LockfileResolver}, if {@code -Dclasspath-replacer.lockfile} is set</li>
+ *     <li>{@link Resolver}s registered in {@code META-INF/services/cr.resolver.Resolver}</li>
+ *     <li>{@link LocalRepositoryResolver}, if {@code -Dclasspath-replacer.resolver.offline-first=true}</li>
+ *     <li>{@link ShrinkWrapResolver}, always the last one</li>
+ * </ul>
+ *
+ * @author Freeman
+ */
+public final class ResolverHolder {
+
+    /**
+     * Whether to resolve from local Maven/Gradle caches first, see {@link LocalRepositoryResolver}.
+     */
+    public static final String OFFLINE_FIRST_PROPERTY = Config.PREFIX + "resolver.offline-first";
+
+    private ResolverHolder() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Get the shared {@link CompositeResolver}.
+     *
+     * @return the shared resolver
+     */
+    public static CompositeResolver getResolver() {
+        return Holder.INSTANCE;
+    }
+
+    static List<Resolver> loadResolvers(ClassLoader classLoader) {
+        List<Resolver> resolvers = new ArrayList<>();
+        LockfileResolver lockfile = LockfileResolver.fromConfig();
+        if (lockfile != null) {
+            resolvers.add(lockfile);
+        }
+        for (Resolver resolver : ServiceLoader.load(Resolver.class, classLoader)) {
+            resolvers.add(resolver);
+        }
+        if (Config.getBoolean(OFFLINE_FIRST_PROPERTY, false)) {
+            resolvers.add(LocalRepositoryResolver.getInstance());
+        }
+        resolvers.add(new ShrinkWrapResolver());
+        return resolvers;
+    }
+
+    private static final class Holder {
+        private static final CompositeResolver INSTANCE =
+                new CompositeResolver(loadResolvers(ResolverHolder.class.getClassLoader()));
+    }
+}
@@ -0,0 +1,79 @@
+package cr.resolver;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of one {@link Resolver} in a {@link CompositeResolver}.
+ *
+ * @author Freeman
+ */
+public final class ResolverStats {
+
+    private final String name;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    ResolverStats(String name) {
+        this.name = name;
+    }
+
+    void record(Outcome outcome, long nanos) {
+        switch (outcome) {
+            case HIT:
+                hits.incrementAndGet();
+                break;
+            case MISS:
+                misses.incrementAndGet();
+                break;
+            default:
+                failures.incrementAndGet();
+        }
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Total time spent in the resolver, including misses and failures.
+     *
+     * @return total time in milliseconds
+     */
+    public long getTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalNanos.get());
+    }
+
+    public long getMaxMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return name + ": hits=" + getHits() + ", misses=" + getMisses() + ", failures=" + getFailures() + ", total="
+                + getTotalMillis() + "ms, max=" + getMaxMillis() + "ms";
+    }
+
+    enum Outcome {
+        HIT,
+        MISS,
+        FAILURE
+    }
+}
@@ -0,0 +1,244 @@
+package cr.resolver;
+
+import cr.util.Config;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import org.jboss.shrinkwrap.resolver.api.maven.Maven;
+import org.jboss.shrinkwrap.resolver.api.maven.MavenFormatStage;
+import org.jboss.shrinkwrap.resolver.api.maven.MavenResolverSystemBase;
+import org.jboss.shrinkwrap.resolver.api.maven.MavenStrategyStage;
+import org.jboss.shrinkwrap.resolver.api.maven.PomEquippedResolveStage;
+import org.jboss.shrinkwrap.resolver.api.maven.PomlessResolveStage;
+
+/**
+ * The default {@link Resolver}, resolves coordinates with the Maven resolver of ShrinkWrap.
+ *
+ * <p> It never misses, resolution failures are thrown. Resolved jars are cached on disk, see {@link ResolutionCache}.
+ *
+ * <p> Creating a resolver system reads settings.xml and initializes the repository session, so resolver systems are
+ * reused. A resolver system is not thread-safe, each resolution borrows one exclusively and returns it when done,
+ * concurrent resolutions get their own. A resolver system that failed is dropped, it may be in a broken state.
+ *
+ * <p> Failures are classified:
+ * <ul>
+ *     <li>I/O failures (e.g. connection refused, timeout) are transient, they are retried with exponential backoff,
+ *     and open the JVM-wide {@link CircuitBreaker} when retries are exhausted repeatedly</li>
+ *     <li>Other failures (e.g. artifact not found) are permanent, they are thrown immediately</li>
+ * </ul>
+ *
+ * @author Freeman
+ */
+public final class ShrinkWrapResolver implements Resolver {
+
+    static final String MAX_ATTEMPTS_PROPERTY = Config.PREFIX + "resolver.max-attempts";
+    static final String BACKOFF_INITIAL_PROPERTY = Config.PREFIX + "resolver.backoff.initial-millis";
+    static final String BACKOFF_MAX_PROPERTY = Config.PREFIX + "resolver.backoff.max-millis";
+    static final String FAILURE_THRESHOLD_PROPERTY = Config.PREFIX + "resolver.circuit-breaker.failure-threshold";
+    static final String OPEN_PROPERTY = Config.PREFIX + "resolver.circuit-breaker.open-millis";
+
+    private final Supplier<
+                    ? extends
+                            MavenResolverSystemBase<
+                                    PomEquippedResolveStage, PomlessResolveStage, MavenStrategyStage, MavenFormatStage>>
+            factory;
+    private final int maxAttempts;
+    private final long backoffInitialMillis;
+    private final long backoffMaxMillis;
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * Nullable, persistent cache of the resolutions.
+     */
+    private final ResolutionCache cache;
+
+    /**
+     * Idle resolver systems, at most as many as concurrent resolutions.
+     * The type covers both MavenResolverSystem and ConfigurableMavenResolverSystem.
+     */
+    private final Queue<
+                    MavenResolverSystemBase<
+                            PomEquippedResolveStage, PomlessResolveStage, MavenStrategyStage, MavenFormatStage>>
+            idle = new ConcurrentLinkedQueue<>();
+
+    public ShrinkWrapResolver() {
+        this(
+                Maven::resolver,
+                Config.getInt(MAX_ATTEMPTS_PROPERTY, 3),
+                Config.getLong(BACKOFF_INITIAL_PROPERTY, 200),
+                Config.getLong(BACKOFF_MAX_PROPERTY, 5000),
+                SharedCircuitBreaker.INSTANCE,
+                ResolutionCache.getInstance());
+    }
+
+    ShrinkWrapResolver(
+            Supplier<
+                            ? extends
+                                    MavenResolverSystemBase<
+                                            PomEquippedResolveStage,
+                                            PomlessResolveStage,
+                                            MavenStrategyStage,
+                                            MavenFormatStage>>
+                    factory,
+            int maxAttempts,
+            long backoffInitialMillis,
+            long backoffMaxMillis,
+            CircuitBreaker circuitBreaker) {
+        this(factory, maxAttempts, backoffInitialMillis, backoffMaxMillis, circuitBreaker, null);
+    }
+
+    ShrinkWrapResolver(
+            Supplier<
+                            ? extends
+                                    MavenResolverSystemBase<
+                                            PomEquippedResolveStage,
+                                            PomlessResolveStage,
+                                            MavenStrategyStage,
+                                            MavenFormatStage>>
+                    factory,
+            int maxAttempts,
+            long backoffInitialMillis,
+            long backoffMaxMillis,
+            CircuitBreaker circuitBreaker,
+            ResolutionCache cache) {
+        this.factory = factory;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffInitialMillis = backoffInitialMillis;
+        this.backoffMaxMillis = backoffMaxMillis;
+        this.circuitBreaker = circuitBreaker;
+        this.cache = cache;
+    }
+
+    @Override
+    public Optional<List<URL>> resolve(List<String> coordinates) {
+        if (cache == null) {
+            return Optional.of(resolveRemotely(coordinates));
+        }
+        // coordinates can't contain whitespace
+        return Optional.of(cache.getOrResolve(String.join(" ", coordinates), key -> resolveRemotely(coordinates)));
+    }
+
+    private List<URL> resolveRemotely(List<String> coordinates) {
+        circuitBreaker.acquire();
+        // every exit must be recorded, otherwise a half-open trial never finishes and the breaker stays open
+        boolean recorded = false;
+        try {
+            RuntimeException latestFailure = null;
+            for (int i = 0; i < maxAttempts; i++) {
+                if (i > 0) {
+                    backoff(i);
+                }
+                MavenResolverSystemBase<
+                                PomEquippedResolveStage, PomlessResolveStage, MavenStrategyStage, MavenFormatStage>
+                        system = idle.poll();
+                if (system == null) {
+                    system = factory.get();
+                }
+                List<URL> result;
+                try {
+                    result = toURLs(
+                            system.resolve(coordinates).withTransitivity().asFile());
+                } catch (RuntimeException ex) {
+                    if (!isTransient(ex)) {
+                        // the remote answered, the request itself can't be resolved
+                        recorded = true;
+                        circuitBreaker.onSuccess();
+                        throw new IllegalStateException("Failed to resolve " + coordinates, ex);
+                    }
+                    latestFailure = ex;
+                    continue;
+                }
+                idle.offer(system);
+                recorded = true;
+                circuitBreaker.onSuccess();
+                return result;
+            }
+            IllegalStateException failure =
+                    new IllegalStateException("Resolution failed after " + maxAttempts + " attempts", latestFailure);
+            recorded = true;
+            circuitBreaker.onFailure(failure);
+            throw failure;
+        } finally {
+            if (!recorded) {
+                // interrupted, or an unexpected failure
+                circuitBreaker.onFailure(new IllegalStateException("Resolution of " + coordinates + " was aborted"));
+            }
+        }
+    }
+
+    int idleCount() {
+        return idle.size();
+    }
+
+    @Override
+    public int order() {
+        return LOWEST_ORDER;
+    }
+
+    @Override
+    public String name() {
+        return "shrinkwrap";
+    }
+
+    /**
+     * Whether the failure is caused by I/O, e.g. the remote is unreachable, so it's worth retrying.
+     */
+    static boolean isTransient(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private void backoff(int attempt) {
+        long delay = Math.min(backoffMaxMillis, backoffInitialMillis << Math.min(attempt - 1, 20));
+        if (delay <= 0) {
+            return;
+        }
+        // jitter, so concurrent resolutions don't retry at the same time
+        delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry resolution", e);
+        }
+    }
+
+    private static List<URL> toURLs(File[] files) {
+        // the same file may be reached from different roots
+        Set<String> seen = new HashSet<>();
+        List<URL> result = new ArrayList<>();
+        for (File file : files) {
+            URL url;
+            try {
+                url = file.toURI().toURL();
+            } catch (IOException e) {
+                throw new IllegalStateException("Invalid file: " + file, e);
+            }
+            if (seen.add(url.toString())) {
+                result.add(url);
+            }
+        }
+        return result;
+    }
+
+    private static final class SharedCircuitBreaker {
+        private static final CircuitBreaker INSTANCE = new CircuitBreaker(
+                Config.getInt(FAILURE_THRESHOLD_PROPERTY, 2), Config.getLong(OPEN_PROPERTY, 60_000), System::nanoTime);
+    }
+}
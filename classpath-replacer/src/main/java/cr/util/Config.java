@@ -0,0 +1,69 @@
+package cr.util;
+
+/**
+ * Configuration of classpath replacer, all options are read from system properties.
+ *
+ * <p> All property names start with {@link #PREFIX}, e.g. {@code -Dclasspath-replacer.resolution-cache.enabled=false}.
+ *
+ * @author Freeman
+ */
+public final class Config {
+
+    /**
+     * Prefix of all configuration properties.
+     */
+    public static final String PREFIX = "classpath-replacer.";
+
+    private Config() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Get the value of the given property.
+     *
+     * @param key property name, with or without {@link #PREFIX}
+     * @return the value, or null if not set
+     */
+    public static String get(String key) {
+        String value = System.getProperty(key.startsWith(PREFIX) ? key : PREFIX + key);
+        if (value == null) {
+            return null;
+        }
+        value = value.trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    public static String get(String key, String defaultValue) {
+        String value = get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String value = get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid integer value for property " + key + ": " + value, e);
+        }
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid long value for property " + key + ": " + value, e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package cr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.platform.engine.discovery.DiscoverySelectors;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+
+/**
+ * {@link ClasspathBatch} tester.
+ */
+class ClasspathBatchTest {
+
+    @Test
+    void runVariantInOneLaunch_whenBatchEnabled() {
+        SummaryGeneratingListener listener = new SummaryGeneratingListener();
+        System.setProperty(ClasspathBatch.ENABLED_PROPERTY, "true");
+        try {
+            LauncherFactory.create()
+                    .execute(
+                            LauncherDiscoveryRequestBuilder.request()
+                                    .selectors(DiscoverySelectors.selectClass(Batched.class))
+                                    .build(),
+                            listener);
+        } finally {
+            System.clearProperty(ClasspathBatch.ENABLED_PROPERTY);
+        }
+
+        TestExecutionSummary summary = listener.getSummary();
+        assertEquals(5, summary.getTestsFoundCount());
+        assertEquals(4, summary.getTestsSucceededCount());
+        assertEquals(1, summary.getTestsFailedCount());
+        assertEquals(
+                "failing",
+                summary.getFailures()
+                        .get(0)
+                        .getTestIdentifier()
+                        .getDisplayName()
+                        .replace("()", ""));
+    }
+
+    @EnabledIfSystemProperty(named = ClasspathBatch.ENABLED_PROPERTY, matches = "true")
+    @Classpath(add = "com.google.code.gson:gson:2.8.9")
+    static class Batched {
+
+        static final AtomicInteger beforeAll = new AtomicInteger();
+
+        @BeforeAll
+        static void beforeAll() {
+            beforeAll.incrementAndGet();
+        }
+
+        @Test
+        void first() {
+            assertEquals(1, beforeAll.get());
+        }
+
+        @Test
+        void second() {
+            assertEquals(1, beforeAll.get());
+        }
+
+        @Test
+        void failing() {
+            fail("reported to the outer invocation");
+        }
+
+        @Test
+        @Classpath(add = "com.google.code.gson:gson:2.9.0")
+        void methodLevelFirst() {
+            assertEquals(1, beforeAll.get());
+        }
+
+        @Test
+        @Classpath(add = "com.google.code.gson:gson:2.9.0")
+        void methodLevelSecond() {
+            assertEquals(1, beforeAll.get());
+        }
+    }
+}
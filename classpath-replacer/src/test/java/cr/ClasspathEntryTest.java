@@ -0,0 +1,100 @@
+package cr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link ClasspathEntry} tester.
+ */
+class ClasspathEntryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testGradleCache() throws IOException {
+        ClasspathEntry entry = ClasspathEntry.of(
+                file("caches/modules-2/files-2.1/com.google.code.gson/gson/2.8.9/0a1b2c/gson-2.8.9.jar"));
+
+        assertEquals(ClasspathEntry.Layout.GRADLE_CACHE, entry.layout);
+        assertEquals("com.google.code.gson:gson:2.8.9", entry.coordinate());
+        assertEquals("gson-2.8.9.jar", entry.fileName);
+    }
+
+    @Test
+    void testMavenRepository() throws IOException {
+        ClasspathEntry entry = ClasspathEntry.of(
+                file("repository/org/springframework/cloud/spring-cloud-starter/3.1.5/spring-cloud-starter-3.1.5.jar"));
+
+        assertEquals(ClasspathEntry.Layout.MAVEN_REPOSITORY, entry.layout);
+        assertEquals("org.springframework.cloud:spring-cloud-starter:3.1.5", entry.coordinate());
+
+        // version directory doesn't match the jar name
+        assertNull(ClasspathEntry.of(file("repository/com/example/foo/1.0/foo-1.0.1.jar"))
+                .coordinate());
+    }
+
+    @Test
+    void testPomProperties() throws IOException {
+        Path jar = tempDir.resolve("libs/foo-1.0.jar");
+        Files.createDirectories(jar.getParent());
+        writeJar(
+                jar,
+                "META-INF/maven/com.shaded/bar/pom.properties",
+                "groupId=com.shaded\nartifactId=bar\nversion=2.0\n");
+        URL url = jar.toUri().toURL();
+
+        // pom.properties of a shaded artifact is ignored
+        assertEquals(ClasspathEntry.Layout.UNKNOWN, ClasspathEntry.of(url).layout);
+
+        writeJar(
+                jar,
+                "META-INF/maven/com.example/foo/pom.properties",
+                "groupId=com.example\nartifactId=foo\nversion=1.0\n");
+        // size or last modified time changed, parsed again
+        Files.setLastModifiedTime(
+                jar, FileTime.fromMillis(Files.getLastModifiedTime(jar).toMillis() + 2000));
+        ClasspathEntry entry = ClasspathEntry.of(url);
+
+        assertEquals(ClasspathEntry.Layout.POM_PROPERTIES, entry.layout);
+        assertEquals("com.example:foo:1.0", entry.coordinate());
+        assertSame(entry, ClasspathEntry.of(url));
+    }
+
+    @Test
+    void testDirectory() throws IOException {
+        ClasspathEntry entry = ClasspathEntry.of(tempDir.toUri().toURL());
+
+        assertEquals(ClasspathEntry.Layout.DIRECTORY, entry.layout);
+        assertNull(entry.coordinate());
+    }
+
+    private URL file(String path) throws IOException {
+        Path file = tempDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[0]);
+        return file.toUri().toURL();
+    }
+
+    private static void writeJar(Path jar, String name, String content) throws IOException {
+        try (OutputStream out = Files.newOutputStream(jar);
+                JarOutputStream jarOut = new JarOutputStream(out)) {
+            jarOut.putNextEntry(new JarEntry(name));
+            jarOut.write(content.getBytes(StandardCharsets.UTF_8));
+            jarOut.closeEntry();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package cr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.discovery.DiscoverySelectors;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+
+/**
+ * {@link ClasspathExtension} tester.
+ */
+class ClasspathExtensionTest {
+
+    static final String ENABLED_PROPERTY = "classpath-replacer.test.templates";
+
+    @ParameterizedTest
+    @ValueSource(strings = {"false", "true"})
+    void holdClassLevelClassLoaderUntilClassFinished_whenMixedWithTestTemplates(String parallel) {
+        SummaryGeneratingListener summary = new SummaryGeneratingListener();
+        // class-level loader of the class when each container is finished
+        List<ModifiedClassPathClassLoader> loaders = new ArrayList<>();
+        TestExecutionListener containers = new TestExecutionListener() {
+            @Override
+            public synchronized void executionFinished(TestIdentifier identifier, TestExecutionResult result) {
+                if (identifier.isContainer() && identifier.getDisplayName().startsWith("parameterized")) {
+                    loaders.add(ModifiedClassLoaderCache.get(WithTemplates.class));
+                }
+            }
+        };
+        System.setProperty(ENABLED_PROPERTY, "true");
+        try {
+            LauncherFactory.create()
+                    .execute(
+                            LauncherDiscoveryRequestBuilder.request()
+                                    .selectors(DiscoverySelectors.selectClass(WithTemplates.class))
+                                    .configurationParameter("junit.jupiter.execution.parallel.enabled", parallel)
+                                    .configurationParameter(
+                                            "junit.jupiter.execution.parallel.mode.default", "concurrent")
+                                    .build(),
+                            summary,
+                            containers);
+        } finally {
+            System.clearProperty(ENABLED_PROPERTY);
+        }
+
+        TestExecutionSummary result = summary.getSummary();
+        assertEquals(6, result.getTestsFoundCount());
+        assertEquals(6, result.getTestsSucceededCount());
+        // the template is finished before the class, the loader is still held by the class
+        assertEquals(1, loaders.size());
+        assertNotNull(loaders.get(0));
+        // released when the class is finished
+        assertNull(ModifiedClassLoaderCache.get(WithTemplates.class));
+    }
+
+    @EnabledIfSystemProperty(named = ENABLED_PROPERTY, matches = "true")
+    @Classpath(add = "com.google.code.gson:gson:2.8.9")
+    @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+    static class WithTemplates {
+
+        // the first test to use the class-level loader when executed sequentially
+        @Order(1)
+        @ParameterizedTest
+        @ValueSource(ints = {1, 2, 3})
+        void parameterized(int value) throws Exception {
+            Class.forName("com.google.gson.Gson");
+        }
+
+        @Test
+        void first() throws Exception {
+            Class.forName("com.google.gson.Gson");
+        }
+
+        @Test
+        void second() throws Exception {
+            Class.forName("com.google.gson.Gson");
+        }
+
+        @Test
+        void third() throws Exception {
+            Class.forName("com.google.gson.Gson");
+        }
+    }
+}
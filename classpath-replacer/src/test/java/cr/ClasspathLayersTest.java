@@ -0,0 +1,195 @@
+package cr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link ClasspathLayers} tester.
+ */
+class ClasspathLayersTest {
+
+    @TempDir
+    Path tempDir;
+
+    ClasspathMetadata metadata;
+    URL classes;
+    URL core;
+    URL lib;
+    URL gson;
+    URL junit;
+    URL newGson;
+    URL autoconfigure;
+    URL otherJson;
+    URL spi;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path classesDir = Files.createDirectory(tempDir.resolve("classes"));
+        Path corePath = tempDir.resolve("core.jar");
+        Path libPath = tempDir.resolve("lib.jar");
+        Path gsonPath = tempDir.resolve("gson.jar");
+        Path junitPath = tempDir.resolve("junit.jar");
+        Path autoconfigurePath = tempDir.resolve("autoconfigure.jar");
+        Path otherJsonPath = tempDir.resolve("other-json.jar");
+        Path spiPath = tempDir.resolve("spi.jar");
+        Path newGsonPath = tempDir.resolve("files-2.1/com.google.code.gson/gson/2.9.0/0a1b2c/gson-2.9.0.jar");
+        jar(corePath, "org/example/core/Core.class", classFile("org/example/core/Core", "java/lang/Object"));
+        jar(libPath, "org/example/lib/Lib.class", classFile("org/example/lib/Lib", "Lcom/google/gson/Gson;"));
+        jar(gsonPath, "com/google/gson/Gson.class", classFile("com/google/gson/Gson"));
+        jar(junitPath, "org/junit/Test.class", classFile("org/junit/Test"));
+        // optional dependency, referenced by name only
+        jar(
+                autoconfigurePath,
+                "org/example/autoconfigure/GsonAutoConfiguration.class",
+                classFile("org/example/autoconfigure/GsonAutoConfiguration", "com.google.gson.Gson"));
+        // another artifact shipping the same classes
+        jar(otherJsonPath, "com/google/gson/Gson.class", classFile("com/google/gson/Gson"));
+        jar(spiPath, "org/example/spi/Plugin.class", classFile("org/example/spi/Plugin"));
+        Files.createDirectories(newGsonPath.getParent());
+        jar(newGsonPath, "com/google/gson/Gson.class", classFile("com/google/gson/Gson"));
+        Path metadataFile = tempDir.resolve("metadata.txt");
+        Files.write(
+                metadataFile,
+                Arrays.asList(
+                        ClasspathMetadata.HEADER,
+                        corePath + "\torg.example:core:1.0\t",
+                        libPath + "\torg.example:lib:1.0\tcom.google.code.gson:gson:2.8.9 org.example:core:1.0",
+                        gsonPath + "\tcom.google.code.gson:gson:2.8.9\t",
+                        junitPath + "\torg.junit:junit:5.0\t",
+                        autoconfigurePath + "\torg.example:autoconfigure:1.0\torg.example:core:1.0",
+                        otherJsonPath + "\torg.example:other-json:1.0\t",
+                        spiPath + "\torg.example:spi:1.0\t"),
+                StandardCharsets.UTF_8);
+        metadata = ClasspathMetadata.load(metadataFile);
+        classes = classesDir.toUri().toURL();
+        core = corePath.toUri().toURL();
+        lib = libPath.toUri().toURL();
+        gson = gsonPath.toUri().toURL();
+        junit = junitPath.toUri().toURL();
+        newGson = newGsonPath.toUri().toURL();
+        autoconfigure = autoconfigurePath.toUri().toURL();
+        otherJson = otherJsonPath.toUri().toURL();
+        spi = spiPath.toUri().toURL();
+    }
+
+    @Test
+    void testSplit() {
+        List<URL> original = Arrays.asList(classes, core, lib, gson, junit);
+
+        ClasspathLayers layers =
+                ClasspathLayers.split(Arrays.asList(newGson, classes, core, lib, gson, junit), original, metadata);
+
+        assertEquals(Arrays.asList(core, junit), layers.base);
+        // replaced artifact, its dependents and the project outputs
+        assertEquals(Arrays.asList(newGson, classes, lib, gson), layers.delta);
+    }
+
+    @Test
+    void testSplit_whenExcluded() {
+        List<URL> original = Arrays.asList(classes, core, lib, gson, junit);
+
+        ClasspathLayers layers = ClasspathLayers.split(Arrays.asList(classes, core, lib, junit), original, metadata);
+
+        assertEquals(Arrays.asList(core, junit), layers.base);
+        assertEquals(Arrays.asList(classes, lib), layers.delta);
+    }
+
+    @Test
+    void keepInDelta_whenReferencingAddedClassesWithoutDeclaredDependency() {
+        List<URL> original = Arrays.asList(classes, core, autoconfigure);
+
+        ClasspathLayers layers =
+                ClasspathLayers.split(Arrays.asList(newGson, classes, core, autoconfigure), original, metadata);
+
+        // the base layer can't see the added gson, the auto-configuration must be loaded with it
+        assertEquals(Collections.singletonList(core), layers.base);
+        assertEquals(Arrays.asList(newGson, classes, autoconfigure), layers.delta);
+    }
+
+    @Test
+    void keepInDelta_whenDefiningAddedPackages() {
+        List<URL> original = Arrays.asList(classes, core, otherJson);
+
+        ClasspathLayers layers =
+                ClasspathLayers.split(Arrays.asList(newGson, classes, core, otherJson), original, metadata);
+
+        // the added jar is loaded first, the other jar must not shadow it from the parent layer
+        assertEquals(Collections.singletonList(core), layers.base);
+        assertEquals(Arrays.asList(newGson, classes, otherJson), layers.delta);
+    }
+
+    @Test
+    void keepInDelta_whenDefiningServicesImplementedInDelta() throws IOException {
+        Path providerPath = tempDir.resolve("files-2.1/org.example/provider/1.0/0a1b2c/provider-1.0.jar");
+        Files.createDirectories(providerPath.getParent());
+        jar(
+                providerPath,
+                "META-INF/services/org.example.spi.Plugin",
+                "org.example.provider.GsonPlugin".getBytes(StandardCharsets.UTF_8));
+        URL provider = providerPath.toUri().toURL();
+        List<URL> original = Arrays.asList(classes, core, spi);
+
+        ClasspathLayers layers = ClasspathLayers.split(Arrays.asList(provider, classes, core, spi), original, metadata);
+
+        assertEquals(Collections.singletonList(core), layers.base);
+        assertEquals(Arrays.asList(provider, classes, spi), layers.delta);
+    }
+
+    @Test
+    void notLayered_whenNoMetadata() {
+        List<URL> original = Arrays.asList(classes, core, gson);
+
+        assertNull(ClasspathLayers.split(Arrays.asList(newGson, classes, core, gson), original, null));
+    }
+
+    @Test
+    void notLayered_whenChangedJarIsUnknown() throws IOException {
+        URL unknown = Files.createFile(tempDir.resolve("unknown.jar")).toUri().toURL();
+        List<URL> original = Arrays.asList(classes, core, unknown);
+
+        // dependents of the excluded jar are unknown
+        assertNull(ClasspathLayers.split(Arrays.asList(classes, core), original, metadata));
+    }
+
+    private static void jar(Path path, String entry, byte[] content) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(path))) {
+            out.putNextEntry(new JarEntry(entry));
+            out.write(content);
+            out.closeEntry();
+        }
+    }
+
+    /**
+     * @return a class file with the constant pool only
+     */
+    static byte[] classFile(String... names) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(52);
+        out.writeShort(names.length + 1);
+        for (String name : names) {
+            out.writeByte(1);
+            out.writeUTF(name);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
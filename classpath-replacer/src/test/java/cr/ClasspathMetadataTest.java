@@ -0,0 +1,113 @@
+package cr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link ClasspathMetadata} tester.
+ */
+class ClasspathMetadataTest {
+
+    @TempDir
+    Path tempDir;
+
+    Path metadataFile;
+    URL[] urls;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // non-standard layout, coordinates can't be guessed from the paths
+        Path app = Files.createFile(tempDir.resolve("app.jar"));
+        Path lib = Files.createFile(tempDir.resolve("lib.jar"));
+        Path util = Files.createFile(tempDir.resolve("util.jar"));
+        Path other = Files.createFile(tempDir.resolve("other.jar"));
+        metadataFile = tempDir.resolve("metadata.txt");
+        Files.write(
+                metadataFile,
+                Arrays.asList(
+                        ClasspathMetadata.HEADER,
+                        app + "\tcom.example:app:1.0\tcom.example:lib:2.0",
+                        lib + "\tcom.example:lib:2.0\torg.example:util:1.0",
+                        util + "\torg.example:util:1.0\t",
+                        other + "\tcom.example:other:1.0"),
+                StandardCharsets.UTF_8);
+        urls = new URL[] {
+            app.toUri().toURL(),
+            lib.toUri().toURL(),
+            util.toUri().toURL(),
+            other.toUri().toURL()
+        };
+    }
+
+    @Test
+    void testLoad() throws IOException {
+        ClasspathMetadata metadata = ClasspathMetadata.load(metadataFile);
+
+        ClasspathMetadata.Entry entry = metadata.get(urls[1]);
+        assertEquals("com.example:lib:2.0", entry.coordinate());
+        assertEquals(Collections.singletonList("org.example:util:1.0"), entry.dependencies);
+        assertNull(metadata.get(tempDir.resolve("absent.jar").toUri().toURL()));
+
+        assertEquals(
+                new HashSet<>(Arrays.asList("com.example:app:1.0", "com.example:lib:2.0", "org.example:util:1.0")),
+                metadata.closure("com.example:app:1.0"));
+        assertNull(metadata.closure("com.example:app:2.0"));
+    }
+
+    @Test
+    void throwsException_whenMalformed() throws IOException {
+        Files.write(metadataFile, Arrays.asList("# unknown"), StandardCharsets.UTF_8);
+        assertThrows(IllegalArgumentException.class, () -> ClasspathMetadata.load(metadataFile));
+
+        Files.write(metadataFile, Arrays.asList(ClasspathMetadata.HEADER, "app.jar\tapp"), StandardCharsets.UTF_8);
+        assertThrows(IllegalArgumentException.class, () -> ClasspathMetadata.load(metadataFile));
+    }
+
+    @Test
+    void testExclude() throws Exception {
+        ClasspathMetadata metadata = ClasspathMetadata.load(metadataFile);
+        try (URLClassLoader parent = new URLClassLoader(urls, null)) {
+            assertEquals(
+                    Arrays.asList("app.jar", "util.jar", "other.jar"),
+                    fileNames(new ModifiedClassPathClassLoaderBuilder(parent, metadata)
+                            .exclude("com.example:lib")
+                            .build()
+                            .getURLs()));
+
+            assertEquals(
+                    Collections.singletonList("other.jar"),
+                    fileNames(new ModifiedClassPathClassLoaderBuilder(parent, metadata)
+                            .classpathReplacer(ClasspathMetadataTest.class
+                                    .getDeclaredMethod("excludeTransitive")
+                                    .getAnnotation(Classpath.class))
+                            .exclude("com.example:app:1.0")
+                            .build()
+                            .getURLs()));
+        }
+    }
+
+    @Classpath(excludeTransitive = true)
+    void excludeTransitive() {}
+
+    private static List<String> fileNames(URL[] urls) {
+        return Arrays.stream(urls)
+                .map(url -> url.getPath().substring(url.getPath().lastIndexOf('/') + 1))
+                .collect(Collectors.toList());
+    }
+}
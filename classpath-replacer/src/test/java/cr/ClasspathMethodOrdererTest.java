@@ -0,0 +1,123 @@
+package cr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.discovery.DiscoverySelectors;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+
+/**
+ * {@link ClasspathMethodOrderer} tester.
+ */
+class ClasspathMethodOrdererTest {
+
+    static final String ENABLED_PROPERTY = "classpath-replacer.test.variants";
+
+    @Test
+    void groupMethodsByVariant() {
+        List<String> executed = new ArrayList<>();
+        TestExecutionSummary summary = execute(Variants.class, "false", executed);
+
+        assertEquals(5, summary.getTestsSucceededCount());
+        // class-level variant first, then each method-level variant together
+        assertEquals(new HashSet<>(Arrays.asList("classLevel1", "classLevel2")), new HashSet<>(executed.subList(0, 2)));
+        assertEquals(1, Math.abs(executed.indexOf("gson1") - executed.indexOf("gson2")));
+    }
+
+    @Test
+    void runVariantsInParallel_whenLimited() {
+        System.setProperty(VariantScheduler.MAX_VARIANTS_PROPERTY, "1");
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            TestExecutionSummary summary = execute(Variants.class, "true", new ArrayList<>());
+
+            assertEquals(5, summary.getTestsFoundCount());
+            assertEquals(5, summary.getTestsSucceededCount());
+            assertEquals(0, VariantScheduler.runningVariants());
+            assertEquals(contextClassLoader, Thread.currentThread().getContextClassLoader());
+        } finally {
+            System.clearProperty(VariantScheduler.MAX_VARIANTS_PROPERTY);
+        }
+    }
+
+    private static TestExecutionSummary execute(Class<?> testClass, String parallel, List<String> executed) {
+        SummaryGeneratingListener summary = new SummaryGeneratingListener();
+        TestExecutionListener order = new TestExecutionListener() {
+            @Override
+            public synchronized void executionFinished(TestIdentifier identifier, TestExecutionResult result) {
+                if (identifier.isTest()) {
+                    executed.add(identifier.getDisplayName().replace("()", ""));
+                }
+            }
+        };
+        System.setProperty(ENABLED_PROPERTY, "true");
+        try {
+            LauncherFactory.create()
+                    .execute(
+                            LauncherDiscoveryRequestBuilder.request()
+                                    .selectors(DiscoverySelectors.selectClass(testClass))
+                                    .configurationParameter("junit.jupiter.execution.parallel.enabled", parallel)
+                                    .configurationParameter(
+                                            "junit.jupiter.execution.parallel.mode.default", "concurrent")
+                                    .build(),
+                            summary,
+                            order);
+        } finally {
+            System.clearProperty(ENABLED_PROPERTY);
+        }
+        return summary.getSummary();
+    }
+
+    @EnabledIfSystemProperty(named = ENABLED_PROPERTY, matches = "true")
+    @TestMethodOrder(ClasspathMethodOrderer.class)
+    @Classpath(add = "com.google.code.gson:gson:2.8.9")
+    static class Variants {
+
+        @Test
+        @Classpath(add = "com.google.code.gson:gson:2.9.0")
+        void gson1() throws Exception {
+            assertEquals("gson-2.9.0.jar", gsonJar());
+        }
+
+        @Test
+        void classLevel1() throws Exception {
+            assertEquals("gson-2.8.9.jar", gsonJar());
+        }
+
+        @Test
+        @Classpath(add = "com.fasterxml.jackson.core:jackson-databind:2.14.1")
+        void jackson() throws Exception {
+            Class.forName("com.fasterxml.jackson.databind.ObjectMapper");
+        }
+
+        @Test
+        @Classpath(add = "com.google.code.gson:gson:2.9.0")
+        void gson2() throws Exception {
+            assertEquals("gson-2.9.0.jar", gsonJar());
+        }
+
+        @Test
+        void classLevel2() throws Exception {
+            assertEquals("gson-2.8.9.jar", gsonJar());
+        }
+
+        private static String gsonJar() throws Exception {
+            Class<?> gson = Class.forName("com.google.gson.Gson");
+            String path =
+                    gson.getProtectionDomain().getCodeSource().getLocation().getPath();
+            return path.substring(path.lastIndexOf('/') + 1);
+        }
+    }
+}
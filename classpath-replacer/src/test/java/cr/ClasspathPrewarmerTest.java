@@ -0,0 +1,53 @@
+package cr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.engine.discovery.DiscoverySelectors;
+import org.junit.platform.launcher.TestPlan;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+
+/**
+ * {@link ClasspathPrewarmer} tester.
+ */
+class ClasspathPrewarmerTest {
+
+    @Test
+    void testPrewarm() throws Exception {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        TestPlan testPlan = LauncherFactory.create()
+                .discover(LauncherDiscoveryRequestBuilder.request()
+                        .selectors(DiscoverySelectors.selectClass(ClassLevel.class))
+                        .build());
+
+        ClasspathPrewarmer.prewarm(testPlan, classLoader).get(5, TimeUnit.MINUTES);
+
+        // the class-level loader is cached without references, it's not held for a class that may never run
+        assertNull(ModifiedClassLoaderCache.get(ClassLevel.class));
+        long misses = ModifiedClassLoaderCache.getStats().getMisses();
+        ModifiedClassPathClassLoader loader = ClasspathExtension.builder(
+                        ClassLevel.class.getAnnotation(Classpath.class), classLoader)
+                .buildShared();
+        ModifiedClassLoaderCache.release(loader);
+        assertEquals(misses, ModifiedClassLoaderCache.getStats().getMisses());
+        // method-level loaders are not shared, only their coordinates are resolved
+        assertNotNull(MavenUtils.resolveCoordinate("com.google.code.gson:gson:2.9.0"));
+    }
+
+    @Disabled("Only used by ClasspathPrewarmerTest")
+    @Classpath(add = "com.google.code.gson:gson:2.8.9")
+    static class ClassLevel {
+
+        @Test
+        void classLevel() {}
+
+        @Test
+        @Classpath(add = "com.google.code.gson:gson:2.9.0")
+        void methodLevel() {}
+    }
+}
@@ -0,0 +1,90 @@
+package cr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link ClasspathSnapshot} tester.
+ */
+class ClasspathSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testPathingJars() throws IOException {
+        Path lib = Files.createDirectories(tempDir.resolve("lib"));
+        Path a = Files.createFile(lib.resolve("a.jar"));
+        Path b = Files.createFile(lib.resolve("b.jar"));
+        // relative and absolute Class-Path entries
+        Path pathing = jar(tempDir.resolve("test-pathing.jar"), "lib/a.jar " + b.toUri(), false);
+        // not manifest-only, must be kept as is
+        Path classpath = jar(tempDir.resolve("classpath.jar"), "lib/a.jar", true);
+
+        try (URLClassLoader loader = new URLClassLoader(
+                new URL[] {pathing.toUri().toURL(), classpath.toUri().toURL()}, null)) {
+            ClasspathSnapshot snapshot = ClasspathSnapshot.of(loader);
+
+            assertSame(snapshot, ClasspathSnapshot.of(loader));
+            assertEquals(
+                    Arrays.asList(a.toFile(), b.toFile(), classpath.toFile()),
+                    snapshot.urls().stream().map(ClasspathSnapshotTest::toFile).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void useJavaClassPath_whenNotUrlClassLoader() {
+        ClasspathSnapshot snapshot = ClasspathSnapshot.create(new ClassLoader(null) {});
+
+        List<String> expected = Arrays.stream(
+                        System.getProperty("java.class.path").split(File.pathSeparator))
+                .filter(entry -> !entry.isEmpty())
+                .map(entry -> new File(entry).getAbsolutePath())
+                .collect(Collectors.toList());
+        assertEquals(
+                expected,
+                snapshot.urls().stream()
+                        .map(url -> toFile(url).getAbsolutePath())
+                        .collect(Collectors.toList()));
+    }
+
+    private static Path jar(Path path, String classPath, boolean withClass) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath);
+        try (OutputStream out = Files.newOutputStream(path);
+                JarOutputStream jar = new JarOutputStream(out, manifest)) {
+            if (withClass) {
+                jar.putNextEntry(new JarEntry("com/example/Foo.class"));
+                jar.write(new byte[] {0});
+                jar.closeEntry();
+            }
+        }
+        return path;
+    }
+
+    private static File toFile(URL url) {
+        try {
+            return new File(url.toURI());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
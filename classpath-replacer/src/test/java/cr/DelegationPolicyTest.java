@@ -0,0 +1,86 @@
+package cr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import cr.DelegationPolicy.Decision;
+import cr.util.Config;
+import java.net.URL;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link DelegationPolicy} tester.
+ */
+class DelegationPolicyTest {
+
+    @Test
+    void testDecide() {
+        System.setProperty(DelegationPolicy.CHILD_FIRST_PROPERTY, "org.junit.experimental.");
+        System.setProperty(DelegationPolicy.HIDDEN_PROPERTY, "com.google.gson.internal, com.example.Hidden");
+        try {
+            DelegationPolicy policy =
+                    DelegationPolicy.of(DelegationPolicy.Defaults.load(), new String[] {"com.google.gson"});
+
+            assertEquals(Decision.PARENT_FIRST, policy.decide("org.junit.jupiter.api.Test"));
+            // longest prefix wins
+            assertEquals(Decision.CHILD_FIRST, policy.decide("org.junit.experimental.Foo"));
+            assertEquals(Decision.PARENT_FIRST, policy.decide("com.google.gson.Gson"));
+            assertEquals(Decision.HIDDEN, policy.decide("com.google.gson.internal.Excluder"));
+            assertEquals(Decision.HIDDEN, policy.decide("com.example.Hidden"));
+            assertEquals(Decision.CHILD_FIRST, policy.decide("com.example.Visible"));
+            assertEquals(Decision.CHILD_FIRST, policy.decide("java.lang.String"));
+        } finally {
+            System.clearProperty(DelegationPolicy.CHILD_FIRST_PROPERTY);
+            System.clearProperty(DelegationPolicy.HIDDEN_PROPERTY);
+        }
+    }
+
+    @Test
+    void sharePolicy_whenSameRules() {
+        assertSame(DelegationPolicy.defaults(), DelegationPolicy.of(new String[0]));
+        assertSame(
+                DelegationPolicy.of(new String[] {"com.example"}), DelegationPolicy.of(new String[] {"com.example"}));
+        assertNotSame(DelegationPolicy.defaults(), DelegationPolicy.of(new String[] {"com.example"}));
+    }
+
+    @Test
+    void readDefaultsOnce() {
+        DelegationPolicy policy = DelegationPolicy.defaults();
+        System.setProperty(DelegationPolicy.HIDDEN_PROPERTY, "com.example");
+        try {
+            assertSame(policy, DelegationPolicy.defaults());
+            assertEquals(Decision.CHILD_FIRST, DelegationPolicy.defaults().decide("com.example.Foo"));
+        } finally {
+            System.clearProperty(DelegationPolicy.HIDDEN_PROPERTY);
+        }
+    }
+
+    @Test
+    void hideClass() throws Exception {
+        System.setProperty(DelegationPolicy.HIDDEN_PROPERTY, "cr.util.Config");
+        ClassLoader app = getClass().getClassLoader();
+        try (ModifiedClassPathClassLoader loader = new ModifiedClassPathClassLoader(
+                new URL[0],
+                app.getParent(),
+                app,
+                DelegationPolicy.of(DelegationPolicy.Defaults.load(), new String[0]))) {
+            assertThrows(ClassNotFoundException.class, () -> loader.loadClass(Config.class.getName()));
+        } finally {
+            System.clearProperty(DelegationPolicy.HIDDEN_PROPERTY);
+        }
+    }
+
+    @Test
+    @Classpath(parentFirst = "cr.util.Config")
+    void testParentFirst() {
+        assertNotSame(DelegationPolicyTest.class.getClassLoader(), Config.class.getClassLoader());
+    }
+
+    @Test
+    @Classpath
+    void testChildFirst() {
+        assertSame(DelegationPolicyTest.class.getClassLoader(), Config.class.getClassLoader());
+    }
+}
@@ -0,0 +1,73 @@
+package cr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import cr.action.Exclude;
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link ExcludePlan} tester.
+ */
+class ExcludePlanTest {
+
+    static final String M2 = "/home/user/.m2/repository/";
+    static final String GRADLE = "/home/user/.gradle/caches/modules-2/files-2.1/";
+
+    final List<URL> urls = urls(
+            M2 + "org/springframework/boot/spring-boot/3.0.0/spring-boot-3.0.0.jar",
+            M2 + "org/springframework/boot/spring-boot-autoconfigure/3.0.0/spring-boot-autoconfigure-3.0.0.jar",
+            GRADLE + "com.google.code.gson/gson/2.8.9/0a1b2c/gson-2.8.9.jar",
+            GRADLE + "com.example/gson/2.8.9/0a1b2c/gson-2.8.9.jar",
+            "/project/build/classes/java/main/");
+
+    @Test
+    void testFileNames() {
+        assertEquals(
+                Arrays.asList("spring-boot-3.0.0.jar", "main"),
+                fileNames(apply("gson-2.8.9.jar", "spring-boot-auto*.jar")));
+    }
+
+    @Test
+    void testCoordinates() {
+        assertEquals(
+                Arrays.asList("spring-boot-autoconfigure-3.0.0.jar", "gson-2.8.9.jar", "main"),
+                fileNames(apply("org.springframework.boot:spring-boot:3.0.0", "com.google.code.gson:gson:2.8.9")));
+        assertEquals(
+                Arrays.asList("spring-boot-3.0.0.jar", "gson-2.8.9.jar", "main"),
+                fileNames(apply("org.springframework.boot:spring-boot-autoconfigure", "com.example:gson")));
+    }
+
+    @Test
+    void notExclude_whenArtifactIdIsPrefixOfAnother() {
+        assertEquals(
+                Arrays.asList("spring-boot-autoconfigure-3.0.0.jar", "gson-2.8.9.jar", "gson-2.8.9.jar", "main"),
+                fileNames(apply("org.springframework.boot:spring-boot")));
+    }
+
+    private List<URL> apply(String... patterns) {
+        return ExcludePlan.compile(Exclude.of(patterns), false, urls, null).apply();
+    }
+
+    private static List<URL> urls(String... paths) {
+        List<URL> urls = new ArrayList<>();
+        for (String path : paths) {
+            try {
+                urls.add(new File(path).toURI().toURL());
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return urls;
+    }
+
+    private static List<String> fileNames(List<URL> urls) {
+        return urls.stream().map(url -> new File(url.getPath()).getName()).collect(Collectors.toList());
+    }
+}
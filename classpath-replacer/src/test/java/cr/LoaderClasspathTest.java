@@ -0,0 +1,105 @@
+package cr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link LoaderClasspath} tester.
+ */
+class LoaderClasspathTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testFind() throws Exception {
+        Path classes = Files.createDirectories(tempDir.resolve("classes/com/example"));
+        Files.write(classes.resolve("App.class"), new byte[] {1});
+        URL[] urls = {
+            tempDir.resolve("classes").toUri().toURL(),
+            jar("first.jar", "com/google/gson/Gson.class", "META-INF/versions/11/com/example/internal/Util.class"),
+            jar("second.jar", "com/google/gson/Gson.class", "com/google/gson/JsonObject.class", "root.properties")
+        };
+        LoaderClasspath classpath = LoaderClasspath.of(urls);
+
+        try {
+            assertEquals(urls[0], classpath.find("com/example/App.class").codeSourceUrl);
+            assertEquals(urls[1], classpath.find("com/google/gson/Gson.class").codeSourceUrl);
+            assertEquals(urls[2], classpath.find("com/google/gson/JsonObject.class").codeSourceUrl);
+            assertEquals(urls[2], classpath.find("root.properties").codeSourceUrl);
+            // directories are resources too
+            assertNotNull(classpath.find("com/example/"));
+            assertEquals(2, classpath.findAll("com/google/gson/Gson.class").size());
+            assertNull(classpath.find("com/google/gson/Missing.class"));
+            assertNull(classpath.find("org/example/Missing.class"));
+        } finally {
+            classpath.close();
+        }
+    }
+
+    @Test
+    void findFilesCreatedInDirectories() throws Exception {
+        Path classes = Files.createDirectories(tempDir.resolve("classes/com/example"));
+        LoaderClasspath classpath = LoaderClasspath.of(new URL[] {
+            jar("lib.jar", "com/google/gson/Gson.class"),
+            tempDir.resolve("classes").toUri().toURL()
+        });
+
+        try {
+            assertNull(classpath.find("com/example/App.class"));
+            assertNull(classpath.find("org/generated/Generated.class"));
+            assertNull(classpath.find("com/google/gson/Generated.class"));
+            Files.write(classes.resolve("App.class"), new byte[] {1});
+            Path generated = Files.createDirectories(tempDir.resolve("classes/org/generated"));
+            Files.write(generated.resolve("Generated.class"), new byte[] {1});
+            Path gson = Files.createDirectories(tempDir.resolve("classes/com/google/gson"));
+            Files.write(gson.resolve("Generated.class"), new byte[] {1});
+
+            // directories may change, misses in directories and new packages are looked up again
+            assertNotNull(classpath.find("com/example/App.class"));
+            assertNotNull(classpath.find("org/generated/Generated.class"));
+            assertNotNull(classpath.find("com/google/gson/Generated.class"));
+        } finally {
+            classpath.close();
+        }
+    }
+
+    @Test
+    void searchDirectoriesInClasspathOrder() throws Exception {
+        Path classes = Files.createDirectories(tempDir.resolve("classes/com/google/gson"));
+        Files.write(classes.resolve("Gson.class"), new byte[] {1});
+        URL[] urls = {tempDir.resolve("classes").toUri().toURL(), jar("lib.jar", "com/google/gson/Gson.class")};
+        LoaderClasspath classpath = LoaderClasspath.of(urls);
+
+        try {
+            assertEquals(urls[0], classpath.find("com/google/gson/Gson.class").codeSourceUrl);
+            assertEquals(2, classpath.findAll("com/google/gson/Gson.class").size());
+        } finally {
+            classpath.close();
+        }
+    }
+
+    private URL jar(String name, String... entries) throws IOException {
+        Path jar = tempDir.resolve(name);
+        try (OutputStream out = Files.newOutputStream(jar);
+                JarOutputStream jarOut = new JarOutputStream(out)) {
+            for (String entry : entries) {
+                jarOut.putNextEntry(new JarEntry(entry));
+                jarOut.write(1);
+                jarOut.closeEntry();
+            }
+        }
+        return jar.toUri().toURL();
+    }
+}
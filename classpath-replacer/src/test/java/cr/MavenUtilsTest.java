@@ -4,7 +4,12 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.Test;
 
 /**
@@ -25,4 +30,45 @@ class MavenUtilsTest {
         urls = MavenUtils.resolveCoordinate(springCloudStarterBootstrap);
         assertTrue(urls.size() > 1);
     }
+
+    /**
+     * {@link MavenUtils#resolveCoordinates(List)}
+     */
+    @Test
+    void testResolveCoordinates() {
+        String gson = "com.google.code.gson:gson:2.8.9";
+        String springCloudStarterBootstrap = "org.springframework.cloud:spring-cloud-starter-bootstrap:3.1.5";
+        List<URL> urls = MavenUtils.resolveCoordinates(Arrays.asList(gson, springCloudStarterBootstrap));
+
+        List<URL> separately = new ArrayList<>(MavenUtils.resolveCoordinate(gson));
+        separately.addAll(MavenUtils.resolveCoordinate(springCloudStarterBootstrap));
+
+        Set<String> distinct = urls.stream().map(MavenUtilsTest::fileName).collect(Collectors.toSet());
+        assertEquals(distinct.size(), urls.size());
+        assertEquals(separately.stream().map(MavenUtilsTest::fileName).collect(Collectors.toSet()), distinct);
+    }
+
+    /**
+     * {@link MavenUtils#resolveAll(List)}
+     */
+    @Test
+    void testResolveAll() {
+        List<String> gson = Collections.singletonList("com.google.code.gson:gson:2.8.9");
+        List<String> jackson = Collections.singletonList("com.fasterxml.jackson.core:jackson-annotations:2.14.1");
+        List<String> spring = Collections.singletonList("org.springframework:spring-core:5.3.20");
+
+        List<List<URL>> result = MavenUtils.resolveAll(Arrays.asList(gson, jackson, spring));
+
+        assertEquals(
+                Arrays.asList(
+                        MavenUtils.resolveCoordinates(gson),
+                        MavenUtils.resolveCoordinates(jackson),
+                        MavenUtils.resolveCoordinates(spring)),
+                result);
+    }
+
+    private static String fileName(URL url) {
+        String path = url.getPath();
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
 }
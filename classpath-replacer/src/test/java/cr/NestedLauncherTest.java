@@ -0,0 +1,27 @@
+package cr;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.launcher.Launcher;
+
+/**
+ * {@link NestedLauncher} tester.
+ */
+class NestedLauncherTest {
+
+    @Test
+    void reuseLauncher_whenSameClassLoader() throws Exception {
+        ClassLoader app = getClass().getClassLoader();
+        try (ModifiedClassPathClassLoader first =
+                        ModifiedClassPathClassLoader.builder(app).build();
+                ModifiedClassPathClassLoader second =
+                        ModifiedClassPathClassLoader.builder(app).build()) {
+            Launcher launcher = NestedLauncher.of(first);
+
+            assertSame(launcher, NestedLauncher.of(first));
+            assertNotSame(launcher, NestedLauncher.of(second));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package cr;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Concurrent class loading by one {@link ModifiedClassPathClassLoader}.
+ */
+class ParallelClassLoadingTest {
+
+    static final int THREADS = 8;
+
+    @Test
+    void loadClassesConcurrently() throws Exception {
+        try (ModifiedClassPathClassLoader loader = ModifiedClassPathClassLoader.builder(
+                        getClass().getClassLoader())
+                .add("com.google.code.gson:gson:2.8.9")
+                .build()) {
+            List<String> classNames = classNames(loader.getURLs()[0]);
+            Map<String, Class<?>> loaded = new ConcurrentHashMap<>();
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < THREADS; i++) {
+                    List<String> shuffled = new ArrayList<>(classNames);
+                    Collections.shuffle(shuffled, new Random(i));
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        for (String className : shuffled) {
+                            Class<?> type = loader.loadClass(className);
+                            Class<?> existing = loaded.putIfAbsent(className, type);
+                            // defined once, no LinkageError for duplicate definitions
+                            assertSame(existing != null ? existing : type, type);
+                            assertSame(loader, type.getClassLoader());
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            assertFalse(loaded.isEmpty());
+        }
+    }
+
+    @Test
+    void notSerialiseLoading_whenLoadingBlocks() throws Exception {
+        // subclasses can only register if ModifiedClassPathClassLoader is registered
+        assertTrue(BlockingLoader.PARALLEL_CAPABLE);
+
+        try (BlockingLoader loader = new BlockingLoader()) {
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                Future<?> blocked = executor.submit(() -> loadQuietly(loader, BlockingLoader.BLOCKED));
+                assertTrue(loader.entered.await(1, TimeUnit.MINUTES));
+
+                // the whole loader is not locked by the blocked loading
+                executor.submit(() -> loadQuietly(loader, "com.example.Other")).get(1, TimeUnit.MINUTES);
+
+                loader.release.countDown();
+                blocked.get(1, TimeUnit.MINUTES);
+            } finally {
+                loader.release.countDown();
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private static void loadQuietly(ClassLoader loader, String className) {
+        try {
+            loader.loadClass(className);
+        } catch (ClassNotFoundException ignored) {
+            // expected
+        }
+    }
+
+    static class BlockingLoader extends ModifiedClassPathClassLoader {
+
+        static final boolean PARALLEL_CAPABLE = ClassLoader.registerAsParallelCapable();
+        static final String BLOCKED = "com.example.Blocked";
+
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        BlockingLoader() {
+            super(new URL[0], null, null);
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            if (BLOCKED.equals(name)) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.findClass(name);
+        }
+    }
+
+    private static List<String> classNames(URL jar) throws Exception {
+        List<String> result = new ArrayList<>();
+        try (JarFile jarFile = new JarFile(new File(jar.toURI()))) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (name.endsWith(".class") && !name.contains("-")) {
+                    result.add(
+                            name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,154 @@
+package cr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Class loaders shared by {@link ModifiedClassLoaderCache#acquire(List, ClassLoader, ClassLoader, DelegationPolicy)}.
+ */
+class SharedClassLoaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    final DelegationPolicy policy = DelegationPolicy.defaults();
+
+    @Test
+    void shareLoader_whenSameClasspath() throws Exception {
+        ClassLoader app = getClass().getClassLoader();
+        URL a = tempDir.resolve("a.jar").toUri().toURL();
+        URL b = tempDir.resolve("b.jar").toUri().toURL();
+        ModifiedClassLoaderCache.Stats stats = ModifiedClassLoaderCache.getStats();
+        long hits = stats.getHits();
+        long misses = stats.getMisses();
+
+        ModifiedClassPathClassLoader loader = ModifiedClassLoaderCache.acquire(Arrays.asList(a, b), null, app, policy);
+
+        assertSame(loader, ModifiedClassLoaderCache.acquire(Arrays.asList(a, b), null, app, policy));
+        // order matters
+        assertNotSame(loader, ModifiedClassLoaderCache.acquire(Arrays.asList(b, a), null, app, policy));
+        // delegation matters
+        assertNotSame(loader, ModifiedClassLoaderCache.acquire(Arrays.asList(a, b), app, app, policy));
+        assertEquals(hits + 1, stats.getHits());
+        assertEquals(misses + 3, stats.getMisses());
+    }
+
+    @Test
+    void evictUnusedLoader_whenMaxEntriesExceeded() throws Exception {
+        ClassLoader app = getClass().getClassLoader();
+        List<URL> inUse =
+                Collections.singletonList(tempDir.resolve("in-use.jar").toUri().toURL());
+        List<URL> unused =
+                Collections.singletonList(tempDir.resolve("unused.jar").toUri().toURL());
+        List<URL> other =
+                Collections.singletonList(tempDir.resolve("other.jar").toUri().toURL());
+
+        ModifiedClassPathClassLoader held = ModifiedClassLoaderCache.acquire(inUse, null, app, policy);
+        ModifiedClassPathClassLoader released = ModifiedClassLoaderCache.acquire(unused, null, app, policy);
+        ModifiedClassLoaderCache.release(released);
+        // kept for reuse
+        assertSame(released, ModifiedClassLoaderCache.acquire(unused, null, app, policy));
+        ModifiedClassLoaderCache.release(released);
+
+        long evictions = ModifiedClassLoaderCache.getStats().getEvictions();
+        System.setProperty(ModifiedClassLoaderCache.MAX_ENTRIES_PROPERTY, "1");
+        try {
+            ModifiedClassLoaderCache.release(ModifiedClassLoaderCache.acquire(other, null, app, policy));
+        } finally {
+            System.clearProperty(ModifiedClassLoaderCache.MAX_ENTRIES_PROPERTY);
+        }
+
+        assertTrue(ModifiedClassLoaderCache.getStats().getEvictions() >= evictions + 2);
+        assertNotSame(released, ModifiedClassLoaderCache.acquire(unused, null, app, policy));
+        // loaders in use are never evicted
+        assertSame(held, ModifiedClassLoaderCache.acquire(inUse, null, app, policy));
+    }
+
+    @Test
+    void keepParentLoader_untilChildIsClosed() throws Exception {
+        ClassLoader app = getClass().getClassLoader();
+        List<URL> baseUrls =
+                Collections.singletonList(tempDir.resolve("base.jar").toUri().toURL());
+        List<URL> deltaUrls =
+                Collections.singletonList(tempDir.resolve("delta.jar").toUri().toURL());
+
+        ModifiedClassPathClassLoader base = ModifiedClassLoaderCache.acquire(baseUrls, null, app, policy);
+        ModifiedClassPathClassLoader child = ModifiedClassLoaderCache.acquire(deltaUrls, base, app, policy);
+        ModifiedClassLoaderCache.release(base);
+
+        System.setProperty(ModifiedClassLoaderCache.MAX_ENTRIES_PROPERTY, "1");
+        try {
+            // referenced by the child
+            assertSame(base, ModifiedClassLoaderCache.acquire(baseUrls, null, app, policy));
+            ModifiedClassLoaderCache.release(base);
+
+            ModifiedClassLoaderCache.release(child);
+        } finally {
+            System.clearProperty(ModifiedClassLoaderCache.MAX_ENTRIES_PROPERTY);
+        }
+
+        assertNotSame(base, ModifiedClassLoaderCache.acquire(baseUrls, null, app, policy));
+    }
+
+    @Test
+    void evictUnusedLoader_whenIdle() throws Exception {
+        ClassLoader app = getClass().getClassLoader();
+        List<URL> idle =
+                Collections.singletonList(tempDir.resolve("idle.jar").toUri().toURL());
+
+        ModifiedClassPathClassLoader loader = ModifiedClassLoaderCache.acquire(idle, null, app, policy);
+        ModifiedClassLoaderCache.release(loader);
+        Thread.sleep(20);
+
+        System.setProperty(ModifiedClassLoaderCache.MAX_IDLE_MILLIS_PROPERTY, "10");
+        try {
+            ModifiedClassPathClassLoader other = ModifiedClassLoaderCache.acquire(
+                    Collections.singletonList(
+                            tempDir.resolve("other.jar").toUri().toURL()),
+                    null,
+                    app,
+                    policy);
+            ModifiedClassLoaderCache.release(other);
+        } finally {
+            System.clearProperty(ModifiedClassLoaderCache.MAX_IDLE_MILLIS_PROPERTY);
+        }
+
+        assertNotSame(loader, ModifiedClassLoaderCache.acquire(idle, null, app, policy));
+    }
+
+    @Test
+    void shareLoader_whenSameClassLevelClasspath() {
+        ClassLoader app = getClass().getClassLoader();
+
+        ModifiedClassPathClassLoader first = ClasspathExtension.getCachedClassLevelClassLoader(First.class, app);
+        ModifiedClassPathClassLoader second = ClasspathExtension.getCachedClassLevelClassLoader(Second.class, app);
+
+        assertSame(first, second);
+        assertTrue(first.getURLs()[0].getPath().endsWith("/gson-2.8.9.jar"));
+    }
+
+    @Disabled("Only used by SharedClassLoaderTest")
+    @Classpath(add = "com.google.code.gson:gson:2.8.9")
+    static class First {
+        @Test
+        void test() {}
+    }
+
+    @Disabled("Only used by SharedClassLoaderTest")
+    @Classpath(add = "com.google.code.gson:gson:2.8.9")
+    static class Second {
+        @Test
+        void test() {}
+    }
+}
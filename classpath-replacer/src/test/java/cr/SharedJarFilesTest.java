@@ -0,0 +1,91 @@
+package cr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link SharedJarFiles} tester.
+ */
+class SharedJarFilesTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shareJarFile_whenSameJar() throws Exception {
+        URL[] urls = {jar("lib.jar", null, "lib.txt", "lib").toUri().toURL()};
+        int size = SharedJarFiles.size();
+
+        ModifiedClassPathClassLoader first = new ModifiedClassPathClassLoader(urls, null, null);
+        ModifiedClassPathClassLoader second = new ModifiedClassPathClassLoader(urls, null, null);
+        assertEquals("lib", read(first.getResource("lib.txt")));
+        assertEquals("lib", read(second.getResource("lib.txt")));
+        assertEquals(size + 1, SharedJarFiles.size());
+
+        first.close();
+        assertEquals(size + 1, SharedJarFiles.size());
+        second.close();
+        assertEquals(size, SharedJarFiles.size());
+    }
+
+    @Test
+    void testClassPathManifestAttribute() throws Exception {
+        Files.createDirectory(tempDir.resolve("lib"));
+        jar("lib/dependency.jar", null, "same.txt", "dependency");
+        URL[] urls = {
+            jar("app.jar", "lib/dependency.jar", "app.txt", "app").toUri().toURL(),
+            jar("other.jar", null, "same.txt", "other").toUri().toURL()
+        };
+
+        try (ModifiedClassPathClassLoader loader = new ModifiedClassPathClassLoader(urls, null, null)) {
+            assertEquals("app", read(loader.getResource("app.txt")));
+            // searched right after the jar declaring it
+            assertEquals("dependency", read(loader.getResource("same.txt")));
+            assertEquals(2, Collections.list(loader.getResources("same.txt")).size());
+            assertNull(loader.getResource("../app.txt"));
+        }
+    }
+
+    private Path jar(String name, String classPath, String entry, String content) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (classPath != null) {
+            manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath);
+        }
+        Path jar = tempDir.resolve(name);
+        try (OutputStream out = Files.newOutputStream(jar);
+                JarOutputStream jarOut = new JarOutputStream(out, manifest)) {
+            jarOut.putNextEntry(new JarEntry(entry));
+            jarOut.write(content.getBytes(StandardCharsets.UTF_8));
+            jarOut.closeEntry();
+        }
+        return jar;
+    }
+
+    private static String read(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        // don't keep the jar open by the JarURLConnection cache
+        connection.setUseCaches(false);
+        try (InputStream in = connection.getInputStream()) {
+            byte[] bytes = new byte[64];
+            int length = in.read(bytes);
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package cr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link SingleFlight} tester.
+ */
+class SingleFlightTest {
+
+    @Test
+    void computeOnce_whenConcurrentAccess() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger counter = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> singleFlight.get("key", k -> {
+                    counter.incrementAndGet();
+                    started.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return k.toUpperCase();
+                })));
+            }
+            started.await(10, TimeUnit.SECONDS);
+            release.countDown();
+            for (Future<String> future : futures) {
+                assertEquals("KEY", future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, counter.get());
+        assertEquals("KEY", singleFlight.get("key", k -> "other"));
+    }
+
+    @Test
+    void notMemoize_whenFailed() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        assertThrows(
+                IllegalStateException.class,
+                () -> singleFlight.get("key", k -> {
+                    throw new IllegalStateException("failed");
+                }));
+        assertEquals("value", singleFlight.get("key", k -> "value"));
+    }
+}
@@ -0,0 +1,59 @@
+package cr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link VariantScheduler} tester.
+ */
+class VariantSchedulerTest {
+
+    @AfterEach
+    void reset() {
+        System.clearProperty(VariantScheduler.MAX_VARIANTS_PROPERTY);
+    }
+
+    @Test
+    void joinRunningVariant_andWaitForNewVariant_whenLimitReached() throws Exception {
+        System.setProperty(VariantScheduler.MAX_VARIANTS_PROPERTY, "1");
+
+        VariantScheduler.Permit first = VariantScheduler.enter("a");
+        // same variant joins right away
+        VariantScheduler.Permit second =
+                CompletableFuture.supplyAsync(() -> enter("a")).get(5, TimeUnit.SECONDS);
+        CompletableFuture<VariantScheduler.Permit> other = CompletableFuture.supplyAsync(() -> enter("b"));
+
+        Thread.sleep(200);
+        assertFalse(other.isDone());
+
+        first.close();
+        Thread.sleep(200);
+        assertFalse(other.isDone());
+
+        second.close();
+        other.get(5, TimeUnit.SECONDS).close();
+        assertEquals(0, VariantScheduler.runningVariants());
+    }
+
+    @Test
+    void noLimit_byDefault() throws Exception {
+        try (VariantScheduler.Permit a = VariantScheduler.enter("a");
+                VariantScheduler.Permit b = VariantScheduler.enter("b")) {
+            assertEquals(2, VariantScheduler.runningVariants());
+        }
+        assertEquals(0, VariantScheduler.runningVariants());
+    }
+
+    private static VariantScheduler.Permit enter(Object variant) {
+        try {
+            return VariantScheduler.enter(variant);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
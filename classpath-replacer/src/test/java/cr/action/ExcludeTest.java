@@ -16,9 +16,8 @@ class ExcludeTest {
             add = "org.springframework.cloud:spring-cloud-starter-bootstrap:3.1.5",
             exclude = "org.springframework:spring-cloud-starter-bootstrap:3.1.5" // different group id
             )
-    void testKnownIssue_whenMavenProjectHasDifferentGroupId_thenExcludePossibly() {
-        // TODO: known issue, shouldn't not exclude when different group id
-        assertThrows(ClassNotFoundException.class, () -> {
+    void notExclude_whenMavenProjectHasDifferentGroupIdPrefix() {
+        assertDoesNotThrow(() -> {
             Class.forName("org.springframework.cloud.bootstrap.marker.Marker");
         });
     }
@@ -0,0 +1,66 @@
+package cr.packager;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link PackagerHolder} tester.
+ */
+class PackagerHolderTest {
+
+    static boolean initialized;
+
+    @Test
+    void testGetPackagers() {
+        List<Class<?>> types =
+                PackagerHolder.getPackagers().stream().map(Object::getClass).collect(Collectors.toList());
+
+        assertTrue(types.contains(Junit5Packager.class));
+        assertTrue(types.contains(PresentPackager.class));
+        assertFalse(types.contains(AbsentPackager.class));
+        assertFalse(types.contains(MockitoPackager.class));
+        // required classes are not initialized
+        assertFalse(initialized);
+    }
+
+    @Test
+    void testResourcePackager() {
+        assertArrayEquals(
+                new String[] {"cr.packager.PackagerHolderTest$Shared"}, new ResourcePackager().internalPackages());
+    }
+
+    public static class PresentPackager implements Packager {
+        @Override
+        public String[] internalPackages() {
+            return new String[] {"com.example.present"};
+        }
+
+        @Override
+        public String requiredClass() {
+            return Framework.class.getName();
+        }
+    }
+
+    public static class AbsentPackager implements Packager {
+        @Override
+        public String[] internalPackages() {
+            return new String[] {"com.example.absent"};
+        }
+
+        @Override
+        public String requiredClass() {
+            return "com.example.absent.Framework";
+        }
+    }
+
+    static class Framework {
+        static {
+            initialized = true;
+        }
+    }
+}
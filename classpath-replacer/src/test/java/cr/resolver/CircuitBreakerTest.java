@@ -0,0 +1,138 @@
+package cr.resolver;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jboss.shrinkwrap.resolver.api.maven.Maven;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link CircuitBreaker} tester.
+ */
+class CircuitBreakerTest {
+
+    final AtomicLong now = new AtomicLong();
+    final CircuitBreaker breaker = new CircuitBreaker(2, 1000, now::get);
+
+    @Test
+    void open_whenConsecutiveFailuresReachThreshold() {
+        RuntimeException failure = new IllegalStateException("down");
+        breaker.acquire();
+        breaker.onFailure(failure);
+        assertFalse(breaker.isOpen());
+        breaker.acquire();
+        breaker.onFailure(failure);
+        assertTrue(breaker.isOpen());
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, breaker::acquire);
+        assertSame(failure, e.getCause());
+    }
+
+    @Test
+    void notOpen_whenSuccessInBetween() {
+        breaker.onFailure(new IllegalStateException("down"));
+        breaker.onSuccess();
+        breaker.onFailure(new IllegalStateException("down"));
+
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    void allowOneTrial_whenOpenDurationElapsed() {
+        breaker.onFailure(new IllegalStateException("down"));
+        breaker.onFailure(new IllegalStateException("down"));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        assertDoesNotThrow(breaker::acquire);
+        // only one trial at a time
+        assertThrows(IllegalStateException.class, breaker::acquire);
+
+        // trial failed, open again
+        breaker.onFailure(new IllegalStateException("down"));
+        assertThrows(IllegalStateException.class, breaker::acquire);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        breaker.acquire();
+        breaker.onSuccess();
+        assertFalse(breaker.isOpen());
+        assertDoesNotThrow(breaker::acquire);
+    }
+
+    @Test
+    void finishTrial_whenTrialInterrupted() throws Exception {
+        breaker.onFailure(new IllegalStateException("down"));
+        breaker.onFailure(new IllegalStateException("down"));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        ShrinkWrapResolver resolver = new ShrinkWrapResolver(
+                () -> Maven.configureResolver()
+                        .withMavenCentralRepo(false)
+                        .withRemoteRepo("unavailable", "http://127.0.0.1:1/repo", "default"),
+                2,
+                60_000,
+                60_000,
+                breaker);
+
+        // interrupt the trial while it waits to retry
+        Thread trial = Thread.currentThread();
+        Thread interrupter = new Thread(() -> {
+            while (!isWaitingToRetry(trial)) {
+                Thread.yield();
+            }
+            trial.interrupt();
+        });
+        interrupter.setDaemon(true);
+        interrupter.start();
+        try {
+            IllegalStateException e = assertThrows(
+                    IllegalStateException.class,
+                    () -> resolver.resolve(Collections.singletonList("com.example.absent:unavailable:0.0.1")));
+            assertTrue(e.getMessage().contains("Interrupted"));
+        } finally {
+            // clear the interrupt status restored by the resolver
+            Thread.interrupted();
+            interrupter.join(5000);
+        }
+
+        // the trial is finished as failed, the next trial is allowed after the open duration
+        assertTrue(breaker.isOpen());
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertDoesNotThrow(breaker::acquire);
+    }
+
+    @Test
+    void finishTrial_whenTrialFailedUnexpectedly() {
+        breaker.onFailure(new IllegalStateException("down"));
+        breaker.onFailure(new IllegalStateException("down"));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        ShrinkWrapResolver resolver = new ShrinkWrapResolver(
+                () -> {
+                    throw new NoClassDefFoundError("org/eclipse/aether/RepositorySystem");
+                },
+                1,
+                1,
+                1,
+                breaker);
+
+        assertThrows(
+                NoClassDefFoundError.class,
+                () -> resolver.resolve(Collections.singletonList("com.google.code.gson:gson:2.8.9")));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertDoesNotThrow(breaker::acquire);
+    }
+
+    private static boolean isWaitingToRetry(Thread thread) {
+        for (StackTraceElement element : thread.getStackTrace()) {
+            if (element.getMethodName().equals("backoff")) {
+                return thread.getState() == Thread.State.TIMED_WAITING;
+            }
+        }
+        return false;
+    }
+}
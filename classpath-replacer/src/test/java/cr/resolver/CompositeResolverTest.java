@@ -0,0 +1,128 @@
+package cr.resolver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link CompositeResolver} tester.
+ */
+class CompositeResolverTest {
+
+    static final List<String> COORDINATES = Collections.singletonList("com.example:app:1.0");
+
+    @Test
+    void testResolve_whenFallback() throws IOException {
+        List<URL> urls =
+                Collections.singletonList(new File("app-1.0.jar").toURI().toURL());
+        FixedResolver last = new FixedResolver("last", 10, Optional.of(Collections.emptyList()));
+        FixedResolver hit = new FixedResolver("hit", 5, Optional.of(urls));
+        FixedResolver failing = new FixedResolver("failing", 1, null);
+        FixedResolver missing = new FixedResolver("missing", 0, Optional.empty());
+        CompositeResolver resolver = new CompositeResolver(Arrays.asList(last, hit, failing, missing));
+
+        assertEquals(Arrays.asList(missing, failing, hit, last), resolver.getResolvers());
+        assertSame(urls, resolver.resolve(COORDINATES).get());
+
+        List<ResolverStats> stats = resolver.getStats();
+        assertEquals("missing", stats.get(0).getName());
+        assertEquals(1, stats.get(0).getMisses());
+        assertEquals(1, stats.get(1).getFailures());
+        assertEquals(1, stats.get(2).getHits());
+        assertEquals(
+                0,
+                stats.get(3).getHits() + stats.get(3).getMisses() + stats.get(3).getFailures());
+    }
+
+    @Test
+    void throwLastFailure_whenAllFailed() {
+        CompositeResolver resolver = new CompositeResolver(Arrays.asList(
+                new FixedResolver("first", 0, null),
+                new FixedResolver("second", 1, Optional.empty()),
+                new FixedResolver("third", 2, null)));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> resolver.resolve(COORDINATES));
+        assertEquals("third", e.getMessage());
+        assertEquals("first", e.getSuppressed()[0].getMessage());
+    }
+
+    @Test
+    void empty_whenAllMissed() {
+        CompositeResolver resolver =
+                new CompositeResolver(Collections.singletonList(new FixedResolver("missing", 0, Optional.empty())));
+
+        assertFalse(resolver.resolve(COORDINATES).isPresent());
+    }
+
+    @Test
+    void testLoadResolvers(@TempDir Path dir) throws IOException {
+        Path services = Files.createDirectories(dir.resolve("META-INF").resolve("services"));
+        Files.write(
+                services.resolve(Resolver.class.getName()),
+                ServiceResolver.class.getName().getBytes(StandardCharsets.UTF_8));
+
+        try (URLClassLoader classLoader =
+                new URLClassLoader(new URL[] {dir.toUri().toURL()}, CompositeResolverTest.class.getClassLoader())) {
+            List<Resolver> resolvers = ResolverHolder.loadResolvers(classLoader);
+
+            assertTrue(resolvers.get(0) instanceof ServiceResolver);
+            assertTrue(resolvers.get(resolvers.size() - 1) instanceof ShrinkWrapResolver);
+        }
+    }
+
+    public static final class ServiceResolver implements Resolver {
+        @Override
+        public Optional<List<URL>> resolve(List<String> coordinates) {
+            return Optional.empty();
+        }
+    }
+
+    static final class FixedResolver implements Resolver {
+        private final String name;
+        private final int order;
+        /**
+         * null means failure
+         */
+        private final Optional<List<URL>> result;
+
+        FixedResolver(String name, int order, Optional<List<URL>> result) {
+            this.name = name;
+            this.order = order;
+            this.result = result;
+        }
+
+        @Override
+        public Optional<List<URL>> resolve(List<String> coordinates) {
+            if (result == null) {
+                throw new IllegalStateException(name);
+            }
+            return result;
+        }
+
+        @Override
+        public int order() {
+            return order;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package cr.resolver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link LocalRepositoryResolver} tester.
+ */
+class LocalRepositoryResolverTest {
+
+    @TempDir
+    Path tempDir;
+
+    Path maven;
+    Path gradle;
+    LocalRepositoryResolver resolver;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        maven = Files.createDirectories(tempDir.resolve("m2"));
+        gradle = Files.createDirectories(tempDir.resolve("files-2.1"));
+        resolver = new LocalRepositoryResolver(
+                Collections.singletonList(maven.toFile()), Collections.singletonList(gradle.toFile()));
+
+        // parent with properties and dependency management
+        mavenArtifact(
+                "com.example",
+                "parent",
+                "1.0",
+                false,
+                "<properties><lib.version>2.0</lib.version></properties>"
+                        + "<dependencyManagement><dependencies>"
+                        + dependency("com.example", "lib", "${lib.version}", null)
+                        + "</dependencies></dependencyManagement>");
+        // child inherits version of lib from parent
+        mavenArtifact(
+                "com.example",
+                "app",
+                "1.0",
+                true,
+                "<parent><groupId>com.example</groupId><artifactId>parent</artifactId><version>1.0</version></parent>"
+                        + "<dependencies>"
+                        + dependency("com.example", "lib", null, null)
+                        + dependency("com.example", "test-only", "1.0", "test")
+                        + "<dependency><groupId>com.example</groupId><artifactId>optional</artifactId>"
+                        + "<version>1.0</version><optional>true</optional></dependency>"
+                        + "</dependencies>");
+        mavenArtifact(
+                "com.example",
+                "lib",
+                "2.0",
+                true,
+                "<dependencies>" + dependency("org.example", "util", "1.0", null) + "</dependencies>");
+        mavenArtifact("com.example", "lib", "1.0", true, "");
+        // util only exists in Gradle cache
+        gradleArtifact("org.example", "util", "1.0", "");
+    }
+
+    @Test
+    void testResolve() {
+        Optional<List<URL>> result = resolver.resolve(Collections.singletonList("com.example:app:1.0"));
+
+        assertEquals(Arrays.asList("app-1.0.jar", "lib-2.0.jar", "util-1.0.jar"), fileNames(result.get()));
+    }
+
+    @Test
+    void nearestWins_whenMultipleVersions() throws IOException {
+        mavenArtifact(
+                "com.example",
+                "other",
+                "1.0",
+                true,
+                "<dependencies>" + dependency("com.example", "lib", "1.0", null) + "</dependencies>");
+
+        Optional<List<URL>> result = resolver.resolve(Arrays.asList("com.example:other:1.0", "com.example:app:1.0"));
+
+        assertEquals(Arrays.asList("other-1.0.jar", "app-1.0.jar", "lib-1.0.jar"), fileNames(result.get()));
+    }
+
+    @Test
+    void testExclusions() throws IOException {
+        mavenArtifact(
+                "com.example",
+                "excluding",
+                "1.0",
+                true,
+                "<dependencies><dependency><groupId>com.example</groupId><artifactId>lib</artifactId>"
+                        + "<version>2.0</version><exclusions><exclusion><groupId>org.example</groupId>"
+                        + "<artifactId>*</artifactId></exclusion></exclusions></dependency></dependencies>");
+
+        Optional<List<URL>> result = resolver.resolve(Collections.singletonList("com.example:excluding:1.0"));
+
+        assertEquals(Arrays.asList("excluding-1.0.jar", "lib-2.0.jar"), fileNames(result.get()));
+    }
+
+    @Test
+    void testManagedExclusionsAndOptional() throws IOException {
+        mavenArtifact(
+                "com.example",
+                "managed",
+                "1.0",
+                true,
+                "<dependencyManagement><dependencies>"
+                        + "<dependency><groupId>com.example</groupId><artifactId>lib</artifactId>"
+                        + "<version>2.0</version><exclusions><exclusion><groupId>org.example</groupId>"
+                        + "<artifactId>*</artifactId></exclusion></exclusions></dependency>"
+                        + "<dependency><groupId>com.example</groupId><artifactId>absent</artifactId>"
+                        + "<version>1.0</version><optional>true</optional></dependency>"
+                        + "</dependencies></dependencyManagement>"
+                        + "<dependencies>"
+                        + dependency("com.example", "lib", null, null)
+                        + dependency("com.example", "absent", null, null)
+                        + "</dependencies>");
+
+        Optional<List<URL>> result = resolver.resolve(Collections.singletonList("com.example:managed:1.0"));
+
+        assertEquals(Arrays.asList("managed-1.0.jar", "lib-2.0.jar"), fileNames(result.get()));
+    }
+
+    @Test
+    void miss_whenJarNotFound() throws IOException {
+        mavenArtifact("com.example", "no-jar", "1.0", false, "");
+
+        assertFalse(resolver.resolve(Collections.singletonList("com.example:no-jar:1.0"))
+                .isPresent());
+        assertFalse(resolver.resolve(Collections.singletonList("com.example:absent:1.0"))
+                .isPresent());
+    }
+
+    @Test
+    void miss_whenVersionRange() throws IOException {
+        mavenArtifact(
+                "com.example",
+                "ranged",
+                "1.0",
+                true,
+                "<dependencies>" + dependency("com.example", "lib", "[1.0,2.0)", null) + "</dependencies>");
+
+        assertFalse(resolver.resolve(Collections.singletonList("com.example:ranged:1.0"))
+                .isPresent());
+    }
+
+    @Test
+    void testProfiles() throws IOException {
+        mavenArtifact(
+                "com.example",
+                "profiled",
+                "1.0",
+                true,
+                "<profiles>"
+                        + "<profile><activation><jdk>!1.0</jdk></activation><dependencies>"
+                        + dependency("com.example", "lib", "1.0", null)
+                        + "</dependencies></profile>"
+                        + "<profile><activation><activeByDefault>true</activeByDefault></activation><dependencies>"
+                        + dependency("com.example", "lib", "2.0", null)
+                        + "</dependencies></profile>"
+                        + "<profile><activation><property><name>absent.property</name></property></activation>"
+                        + "<dependencies>"
+                        + dependency("com.example", "absent", "1.0", null)
+                        + "</dependencies></profile>"
+                        + "</profiles>");
+
+        Optional<List<URL>> result = resolver.resolve(Collections.singletonList("com.example:profiled:1.0"));
+
+        assertEquals(Arrays.asList("profiled-1.0.jar", "lib-1.0.jar"), fileNames(result.get()));
+    }
+
+    @Test
+    void testMatchesJdk() {
+        assertTrue(LocalRepositoryResolver.matchesJdk("1.8", "1.8.0_392"));
+        assertFalse(LocalRepositoryResolver.matchesJdk("!1.8", "1.8.0_392"));
+        assertTrue(LocalRepositoryResolver.matchesJdk("[1.8,11)", "1.8.0_392"));
+        assertFalse(LocalRepositoryResolver.matchesJdk("[1.8,11)", "11.0.2"));
+        assertTrue(LocalRepositoryResolver.matchesJdk("(,1.8],[17,)", "21.0.1"));
+        assertFalse(LocalRepositoryResolver.matchesJdk("(,1.8],[17,)", "11.0.2"));
+    }
+
+    private static List<String> fileNames(List<URL> urls) {
+        return urls.stream()
+                .map(url -> url.getPath().substring(url.getPath().lastIndexOf('/') + 1))
+                .collect(Collectors.toList());
+    }
+
+    private static String dependency(String groupId, String artifactId, String version, String scope) {
+        return "<dependency><groupId>" + groupId + "</groupId><artifactId>" + artifactId + "</artifactId>"
+                + (version != null ? "<version>" + version + "</version>" : "")
+                + (scope != null ? "<scope>" + scope + "</scope>" : "")
+                + "</dependency>";
+    }
+
+    private void mavenArtifact(String groupId, String artifactId, String version, boolean jar, String content)
+            throws IOException {
+        Path dir = Files.createDirectories(maven.resolve(groupId.replace('.', File.separatorChar))
+                .resolve(artifactId)
+                .resolve(version));
+        write(dir, groupId, artifactId, version, jar, content);
+    }
+
+    private void gradleArtifact(String groupId, String artifactId, String version, String content) throws IOException {
+        Path base = gradle.resolve(groupId).resolve(artifactId).resolve(version);
+        write(Files.createDirectories(base.resolve("0a1b2c")), groupId, artifactId, version, false, content);
+        Files.write(
+                Files.createDirectories(base.resolve("3d4e5f")).resolve(artifactId + "-" + version + ".jar"),
+                new byte[0]);
+    }
+
+    private static void write(Path dir, String groupId, String artifactId, String version, boolean jar, String content)
+            throws IOException {
+        String pom = "<project><modelVersion>4.0.0</modelVersion>"
+                + "<groupId>" + groupId + "</groupId><artifactId>" + artifactId + "</artifactId>"
+                + "<version>" + version + "</version>" + content + "</project>";
+        Files.write(dir.resolve(artifactId + "-" + version + ".pom"), pom.getBytes(StandardCharsets.UTF_8));
+        if (jar) {
+            Files.write(dir.resolve(artifactId + "-" + version + ".jar"), new byte[0]);
+        }
+    }
+}
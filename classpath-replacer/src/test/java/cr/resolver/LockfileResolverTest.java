@@ -0,0 +1,123 @@
+package cr.resolver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link LockfileResolver} tester.
+ */
+class LockfileResolverTest {
+
+    @TempDir
+    Path tempDir;
+
+    Path app;
+    Path lib;
+    Path lockfile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        app = Files.write(tempDir.resolve("app-1.0.jar"), new byte[] {1});
+        lib = Files.write(tempDir.resolve("lib-1.0.jar"), new byte[] {2});
+        lockfile = Files.write(
+                tempDir.resolve("classpath-replacer.lock"),
+                Arrays.asList(
+                        LockfileResolver.HEADER,
+                        "[com.example:app:1.0 com.example:other:1.0]",
+                        LockfileResolver.sha256(app.toFile()) + "\t" + app,
+                        "invalid-checksum\t" + lib,
+                        "",
+                        "[com.example:lib:1.0]",
+                        "invalid-checksum\t" + lib),
+                StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testResolve() throws IOException {
+        LockfileResolver resolver = LockfileResolver.load(lockfile, false);
+
+        List<URL> urls = resolver.resolve(Arrays.asList("com.example:app:1.0", "com.example:other:1.0"))
+                .get();
+
+        assertEquals(Arrays.asList(app.toUri().toURL(), lib.toUri().toURL()), urls);
+        assertFalse(resolver.resolve(Collections.singletonList("com.example:app:1.0"))
+                .isPresent());
+    }
+
+    @Test
+    void winOverResolutionCache() throws IOException {
+        Path cached = Files.write(tempDir.resolve("lib-0.9.jar"), new byte[] {3});
+        ResolutionCache cache = new ResolutionCache(tempDir.resolve("cache"));
+        cache.getOrResolve("com.example:lib:1.0", key -> Collections.singletonList(toURL(cached)));
+        ShrinkWrapResolver remote = new ShrinkWrapResolver(
+                () -> {
+                    throw new IllegalStateException("remote");
+                },
+                1,
+                0,
+                0,
+                new CircuitBreaker(1, 60_000, System::nanoTime),
+                cache);
+        CompositeResolver resolver =
+                new CompositeResolver(Arrays.asList(remote, LockfileResolver.load(lockfile, false)));
+
+        assertEquals(
+                Collections.singletonList(lib.toUri().toURL()),
+                resolver.resolve(Collections.singletonList("com.example:lib:1.0"))
+                        .get());
+        // the cache still serves the remote resolver
+        assertEquals(
+                Collections.singletonList(cached.toUri().toURL()),
+                remote.resolve(Collections.singletonList("com.example:lib:1.0")).get());
+        // locked jars are not cached
+        assertThrows(
+                IllegalStateException.class,
+                () -> remote.resolve(Arrays.asList("com.example:app:1.0", "com.example:other:1.0")));
+    }
+
+    @Test
+    void miss_whenChecksumMismatch() {
+        LockfileResolver resolver = LockfileResolver.load(lockfile, true);
+
+        assertFalse(resolver.resolve(Collections.singletonList("com.example:lib:1.0"))
+                .isPresent());
+    }
+
+    @Test
+    void miss_whenJarDeleted() throws IOException {
+        LockfileResolver resolver = LockfileResolver.load(lockfile, false);
+        Files.delete(lib);
+
+        assertFalse(resolver.resolve(Collections.singletonList("com.example:lib:1.0"))
+                .isPresent());
+    }
+
+    @Test
+    void throwException_whenMalformed() throws IOException {
+        Files.write(lockfile, Collections.singletonList("[com.example:lib:1.0]"), StandardCharsets.UTF_8);
+
+        assertThrows(IllegalArgumentException.class, () -> LockfileResolver.load(lockfile, false));
+    }
+
+    private static URL toURL(Path path) {
+        try {
+            return path.toUri().toURL();
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
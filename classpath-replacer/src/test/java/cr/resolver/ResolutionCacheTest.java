@@ -0,0 +1,140 @@
+package cr.resolver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * {@link ResolutionCache} tester.
+ */
+class ResolutionCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testGetOrResolve() throws Exception {
+        Path jar = createJar("gson-2.8.9.jar");
+        AtomicInteger counter = new AtomicInteger();
+        Function<String, List<URL>> resolver = countingResolver(counter, jar);
+
+        ResolutionCache cache = new ResolutionCache(tempDir.resolve("cache"));
+        List<URL> first = cache.getOrResolve("com.google.code.gson:gson:2.8.9", resolver);
+        List<URL> second = cache.getOrResolve("com.google.code.gson:gson:2.8.9", resolver);
+
+        assertEquals(1, counter.get());
+        assertEquals(first, second);
+
+        // another JVM
+        List<URL> third =
+                new ResolutionCache(tempDir.resolve("cache")).getOrResolve("com.google.code.gson:gson:2.8.9", resolver);
+        assertEquals(1, counter.get());
+        assertEquals(first, third);
+    }
+
+    @Test
+    void reResolve_whenJarChanged() throws Exception {
+        Path jar = createJar("gson-2.8.9.jar");
+        AtomicInteger counter = new AtomicInteger();
+        Function<String, List<URL>> resolver = countingResolver(counter, jar);
+
+        ResolutionCache cache = new ResolutionCache(tempDir.resolve("cache"));
+        cache.getOrResolve("com.google.code.gson:gson:2.8.9", resolver);
+
+        Files.write(jar, new byte[] {1, 2, 3, 4});
+        cache.getOrResolve("com.google.code.gson:gson:2.8.9", resolver);
+        assertEquals(2, counter.get());
+
+        Files.delete(jar);
+        cache.getOrResolve("com.google.code.gson:gson:2.8.9", resolver);
+        assertEquals(3, counter.get());
+    }
+
+    @Test
+    void reResolve_whenCleared() throws Exception {
+        Path jar = createJar("gson-2.8.9.jar");
+        AtomicInteger counter = new AtomicInteger();
+        Function<String, List<URL>> resolver = countingResolver(counter, jar);
+
+        ResolutionCache cache = new ResolutionCache(tempDir.resolve("cache"));
+        cache.getOrResolve("com.google.code.gson:gson:2.8.9", resolver);
+        cache.clear();
+        cache.getOrResolve("com.google.code.gson:gson:2.8.9", resolver);
+
+        assertEquals(2, counter.get());
+    }
+
+    @Test
+    void notCache_whenSnapshotVersion() throws Exception {
+        Path jar = createJar("foo-1.0.0-SNAPSHOT.jar");
+        AtomicInteger counter = new AtomicInteger();
+        Function<String, List<URL>> resolver = countingResolver(counter, jar);
+
+        ResolutionCache cache = new ResolutionCache(tempDir.resolve("cache"));
+        cache.getOrResolve("com.example:foo:1.0.0-SNAPSHOT", resolver);
+        cache.getOrResolve("com.example:foo:1.0.0-SNAPSHOT", resolver);
+
+        assertEquals(2, counter.get());
+    }
+
+    @Test
+    void resolveOnce_whenConcurrentAccess() throws Exception {
+        Path jar = createJar("gson-2.8.9.jar");
+        AtomicInteger counter = new AtomicInteger();
+        Function<String, List<URL>> resolver = countingResolver(counter, jar);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(1);
+        ResolutionCache cache = new ResolutionCache(tempDir.resolve("cache"));
+        try {
+            List<Future<List<URL>>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    latch.await();
+                    return cache.getOrResolve("com.google.code.gson:gson:2.8.9", resolver);
+                }));
+            }
+            latch.countDown();
+            for (Future<List<URL>> future : futures) {
+                assertEquals(1, future.get().size());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, counter.get());
+    }
+
+    private Path createJar(String name) throws IOException {
+        Path jar = tempDir.resolve(name);
+        Files.write(jar, new byte[] {1, 2, 3});
+        return jar;
+    }
+
+    private static Function<String, List<URL>> countingResolver(AtomicInteger counter, Path jar) {
+        return coordinate -> {
+            counter.incrementAndGet();
+            try {
+                File file = jar.toFile();
+                return Collections.singletonList(file.toURI().toURL());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+}
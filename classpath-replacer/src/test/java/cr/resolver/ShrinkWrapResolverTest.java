@@ -0,0 +1,103 @@
+package cr.resolver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.jboss.shrinkwrap.resolver.api.maven.Maven;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@link ShrinkWrapResolver} tester.
+ */
+class ShrinkWrapResolverTest {
+
+    @Test
+    void reuseResolverSystem() {
+        // without the resolution cache, which may serve the jars without resolution
+        ShrinkWrapResolver resolver =
+                new ShrinkWrapResolver(Maven::resolver, 3, 200, 5000, new CircuitBreaker(2, 60_000, System::nanoTime));
+
+        List<URL> gson = resolver.resolve(Collections.singletonList("com.google.code.gson:gson:2.8.9"))
+                .get();
+        List<URL> annotations = resolver.resolve(
+                        Collections.singletonList("com.fasterxml.jackson.core:jackson-annotations:2.14.1"))
+                .get();
+
+        assertEquals(Collections.singletonList("gson-2.8.9.jar"), fileNames(gson));
+        // dependencies of the previous resolution are not leaked into the next one
+        assertEquals(Collections.singletonList("jackson-annotations-2.14.1.jar"), fileNames(annotations));
+        assertEquals(1, resolver.idleCount());
+    }
+
+    @Test
+    void dropResolverSystem_whenFailed() {
+        // without the resolution cache, which may serve the jars without resolution
+        ShrinkWrapResolver resolver =
+                new ShrinkWrapResolver(Maven::resolver, 3, 200, 5000, new CircuitBreaker(2, 60_000, System::nanoTime));
+
+        assertThrows(
+                IllegalStateException.class,
+                () -> resolver.resolve(Collections.singletonList("com.example.absent:absent:0.0.1")));
+        assertEquals(0, resolver.idleCount());
+        assertEquals(
+                Collections.singletonList("gson-2.8.9.jar"),
+                fileNames(resolver.resolve(Collections.singletonList("com.google.code.gson:gson:2.8.9"))
+                        .get()));
+    }
+
+    @Test
+    void notRetry_whenArtifactNotFound() {
+        AtomicInteger created = new AtomicInteger();
+        ShrinkWrapResolver resolver = new ShrinkWrapResolver(
+                () -> {
+                    created.incrementAndGet();
+                    return Maven.resolver();
+                },
+                3,
+                1,
+                1,
+                new CircuitBreaker(1, 60_000, System::nanoTime));
+
+        assertThrows(
+                IllegalStateException.class,
+                () -> resolver.resolve(Collections.singletonList("com.example.absent:absent:0.0.1")));
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    void shortCircuit_whenRemoteUnavailable() {
+        AtomicInteger created = new AtomicInteger();
+        ShrinkWrapResolver resolver = new ShrinkWrapResolver(
+                () -> {
+                    created.incrementAndGet();
+                    return Maven.configureResolver()
+                            .withMavenCentralRepo(false)
+                            .withRemoteRepo("unavailable", "http://127.0.0.1:1/repo", "default");
+                },
+                2,
+                1,
+                1,
+                new CircuitBreaker(1, 60_000, System::nanoTime));
+        List<String> coordinates = Collections.singletonList("com.example.absent:unavailable:0.0.1");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> resolver.resolve(coordinates));
+        assertTrue(ShrinkWrapResolver.isTransient(e));
+        assertEquals(2, created.get());
+
+        e = assertThrows(IllegalStateException.class, () -> resolver.resolve(coordinates));
+        assertTrue(e.getMessage().contains("short-circuited"));
+        assertEquals(2, created.get());
+    }
+
+    private static List<String> fileNames(List<URL> urls) {
+        return urls.stream()
+                .map(url -> url.getPath().substring(url.getPath().lastIndexOf('/') + 1))
+                .collect(Collectors.toList());
+    }
+}